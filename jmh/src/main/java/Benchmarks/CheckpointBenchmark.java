@@ -0,0 +1,71 @@
+package Benchmarks;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import ObjectStateTracker.*;
+
+/**
+ * Measures writing a checkpoint of a tracker and restoring it, and compares
+ * the restore with re-adding the objects, which checks every function again
+ * and loses the history. The checkpoint is kept in memory, so the disk is not
+ * measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CheckpointBenchmark {
+
+    @Param({"100000"})
+    public int registrations;
+
+    private Registration[] objects;
+    private Map<Registration, Long> ids;
+    private ObjectStateTracker<Registration, RegistrationState> tracker;
+    private byte[] checkpoint;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.objects = BenchmarkSupport.newMixedRegistrations(this.registrations);
+        this.tracker = BenchmarkSupport.newTracker();
+        this.tracker.addObjects(this.objects);
+
+        /* The position of each registration is its identifier */
+        this.ids = new HashMap<>();
+        for (int i = 0; i < this.objects.length; i++) {
+            this.ids.put(this.objects[i], (long) i);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        this.tracker.checkpoint(out, this.ids::get);
+        this.checkpoint = out.toByteArray();
+
+        if (this.restore().toString().equals(this.tracker.toString()) == false) {
+            throw new IllegalStateException("The trackers are different");
+        }
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public void write() throws IOException {
+        this.tracker.checkpoint(OutputStream.nullOutputStream(), this.ids::get);
+    }
+
+    @Benchmark
+    public ObjectStateTracker<Registration, RegistrationState> restore() throws IOException {
+        ObjectStateTracker<Registration, RegistrationState> restored = BenchmarkSupport.newTracker();
+        restored.restore(new ByteArrayInputStream(this.checkpoint), id -> this.objects[(int) id]);
+        return restored;
+    }
+
+    @Benchmark
+    public ObjectStateTracker<Registration, RegistrationState> readd() {
+        ObjectStateTracker<Registration, RegistrationState> readded = BenchmarkSupport.newTracker();
+        readded.addObjects(this.objects);
+        return readded;
+    }
+}
@@ -0,0 +1,102 @@
+package Benchmarks;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * Compares the results of a run of the benchmarks with the recorded
+ * baseline, both written by JMH as CSV ({@code -rf csv}). A benchmark has
+ * regressed when its score is worse than the baseline by more than the
+ * tolerance: higher for the modes that measure time, lower for throughput.
+ * It prints a line for each benchmark and exits with status 1 if any of them
+ * has regressed, so it can be run after the benchmarks on each change:
+ *
+ * {@code java -cp target/benchmarks.jar Benchmarks.CompareBaseline baselines/baseline.csv results.csv 25}
+ */
+public class CompareBaseline {
+
+    private static final double DEFAULT_TOLERANCE = 25;
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: CompareBaseline <baseline.csv> <results.csv> [tolerance %]");
+            System.exit(2);
+        }
+        double tolerance = (args.length > 2) ? Double.parseDouble(args[2]) : DEFAULT_TOLERANCE;
+
+        Map<String, double[]> baseline = read(Paths.get(args[0]));
+        Map<String, double[]> results = read(Paths.get(args[1]));
+        int regressions = 0;
+
+        for (Map.Entry<String, double[]> entry : results.entrySet()) {
+            double[] before = baseline.get(entry.getKey());
+            double score = entry.getValue()[0];
+            if (before == null) {
+                System.out.printf(Locale.ROOT, "%-70s %14.3f  (no baseline)%n", entry.getKey(), score);
+                continue;
+            }
+
+            /* Positive changes are always worse, whatever the mode */
+            double change = (score - before[0]) / before[0] * 100 * before[1];
+            boolean regressed = change > tolerance;
+            if (regressed == true) {
+                regressions++;
+            }
+            System.out.printf(Locale.ROOT, "%-70s %14.3f %14.3f %+8.1f%%%s%n",
+                    entry.getKey(), before[0], score, change, (regressed == true) ? "  REGRESSION" : "");
+        }
+
+        System.out.println(regressions + " regressions over " + tolerance + "%");
+        System.exit((regressions > 0) ? 1 : 0);
+    }
+
+    /**
+     * Reads the scores of a CSV file of JMH. Each benchmark is identified by
+     * its name, its mode and the values of its parameters; the parameters of
+     * other benchmarks, empty in its row, are left out, so adding a benchmark
+     * with new parameters does not change the others.
+     *
+     * @param path the CSV file
+     * @return the score of each benchmark, and 1 if a higher score is worse
+     * (-1 otherwise)
+     */
+    private static Map<String, double[]> read(Path path) {
+        Map<String, double[]> scores = new LinkedHashMap<>();
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(path);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        List<String> header = split(lines.get(0));
+        int score = header.indexOf("Score");
+        for (String line : lines.subList(1, lines.size())) {
+            List<String> fields = split(line);
+            StringBuilder key = new StringBuilder(fields.get(0)).append(" ").append(fields.get(1));
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") == true && i < fields.size() && fields.get(i).isEmpty() == false) {
+                    key.append(" ").append(header.get(i).substring(7)).append("=").append(fields.get(i));
+                }
+            }
+            double sign = fields.get(1).equals("thrpt") ? -1 : 1;
+            scores.put(key.toString(), new double[]{Double.parseDouble(fields.get(score)), sign});
+        }
+        return scores;
+    }
+
+    /**
+     * Splits a line of a CSV file, removing the quotes of the fields.
+     *
+     * @param line the line
+     * @return the fields of the line
+     */
+    private static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        for (String field : line.split(",", -1)) {
+            fields.add(field.startsWith("\"") ? field.substring(1, field.length() - 1) : field);
+        }
+        return fields;
+    }
+}
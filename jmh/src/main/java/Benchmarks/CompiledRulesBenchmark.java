@@ -0,0 +1,53 @@
+package Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import ObjectStateTracker.*;
+
+/**
+ * Compares a full update of a tracker that decides the six registration
+ * states with the chain of predicates and with the compiled rules, over
+ * registrations in every state.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CompiledRulesBenchmark {
+
+    @Param({"100000"})
+    public int registrations;
+
+    private ObjectStateTracker<Registration, RegistrationState> chain;
+    private ObjectStateTracker<Registration, RegistrationState> compiled;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Registration[] objects = BenchmarkSupport.newMixedRegistrations(this.registrations);
+        this.chain = BenchmarkSupport.newTracker();
+        this.compiled = BenchmarkSupport.newTracker().withRules(BenchmarkSupport.newRules());
+        this.chain.addObjects(objects);
+        this.compiled.addObjects(objects);
+
+        /* Both ways must give the same states */
+        for (Registration r : objects) {
+            if (this.chain.stateOf(r) != this.compiled.stateOf(r)) {
+                throw new IllegalStateException(r + ": " + this.chain.stateOf(r) + " != " + this.compiled.stateOf(r));
+            }
+        }
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public void predicateChain() {
+        this.chain.updateStates();
+    }
+
+    @Benchmark
+    public void compiledRules() {
+        this.compiled.updateStates();
+    }
+}
@@ -0,0 +1,82 @@
+package Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import ObjectStateTracker.*;
+import Tests.RegistrationFixture;
+
+/**
+ * Measures the notifications sent to a concurrent tracker by one and by four
+ * threads; other numbers of threads are measured with the option {@code -t}.
+ * Each thread adds its own registrations to the shared tracker and moves them
+ * between the STARTED and FILLED states.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ConcurrentTrackerBenchmark {
+
+    private static final int REGISTRATIONS_PER_THREAD = 1_000;
+
+    /**
+     * The tracker shared by all the threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Shared {
+
+        ConcurrentObjectStateTracker<Registration, RegistrationState> tracker;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            this.tracker = RegistrationFixture.withRegistrationStates(
+                    new ConcurrentObjectStateTracker<Registration, RegistrationState>(RegistrationState.values()));
+        }
+    }
+
+    /**
+     * The registrations of a thread, added to the shared tracker.
+     */
+    @State(Scope.Thread)
+    public static class Worker {
+
+        Registration[] registrations;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(Shared shared) {
+            this.registrations = BenchmarkSupport.newRegistrations(REGISTRATIONS_PER_THREAD);
+            shared.tracker.addObjects(this.registrations);
+        }
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Changes the affiliation of the next registration of the thread, which
+     * notifies the tracker, and notifies it again.
+     *
+     * @param shared the shared tracker
+     * @param worker the registrations of the thread
+     */
+    private static void toggle(Shared shared, Worker worker) {
+        int current = worker.next;
+        worker.next = (current + 1 == worker.registrations.length) ? 0 : current + 1;
+        Registration r = worker.registrations[current];
+        r.setAffiliation((r.getAffiliation() == null) ? "Arkham College" : null);
+        shared.tracker.update(r, null);
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void oneThread(Shared shared, Worker worker) {
+        toggle(shared, worker);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void fourThreads(Shared shared, Worker worker) {
+        toggle(shared, worker);
+    }
+}
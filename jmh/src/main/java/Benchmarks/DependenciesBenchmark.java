@@ -0,0 +1,71 @@
+package Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import ObjectStateTracker.*;
+import Tests.RegistrationFixture;
+
+/**
+ * Measures a payment-heavy stream of changes, with and without the properties
+ * read by each state function: with them, a change only re-evaluates the
+ * functions that read the changed property.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class DependenciesBenchmark {
+
+    private static final int REGISTRATIONS = 10_000;
+
+    @Param({"false", "true"})
+    public boolean dependencies;
+
+    private Registration[] objects;
+    private ObjectStateTracker<Registration, RegistrationState> tracker;
+    private int event;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.tracker = RegistrationFixture.withRegistrationStates(
+                new ObjectStateTracker<Registration, RegistrationState>(RegistrationState.values()), this.dependencies);
+        this.objects = BenchmarkSupport.newRegistrations(REGISTRATIONS);
+        this.tracker.addObjects(this.objects);
+        for (Registration r : this.objects) {
+            r.setAffiliation("Arkham College");
+        }
+    }
+
+    /**
+     * Checks that a full reconcile does not find any change missed by the
+     * notifications.
+     */
+    @TearDown(Level.Trial)
+    public void check() {
+        for (Registration r : this.objects) {
+            RegistrationState state = this.tracker.stateOf(r);
+            this.tracker.update(r, null);
+            if (this.tracker.stateOf(r) != state) {
+                throw new IllegalStateException(r + ": " + state + " != " + this.tracker.stateOf(r));
+            }
+        }
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Applies the next change: nine payments for each change of affiliation.
+     */
+    @Benchmark
+    public void change() {
+        int i = this.event++;
+        Registration r = this.objects[i % REGISTRATIONS];
+        if (i % 10 == 9) {
+            r.setAffiliation((i % 20 == 9) ? null : "Arkham College");
+        } else {
+            r.pay(1);
+        }
+    }
+}
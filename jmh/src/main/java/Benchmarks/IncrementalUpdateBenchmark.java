@@ -0,0 +1,44 @@
+package Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import ObjectStateTracker.*;
+
+/**
+ * Measures a single notification as the number of tracked objects grows, with
+ * the incremental and the full update modes.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class IncrementalUpdateBenchmark {
+
+    @Param({"1000", "100000"})
+    public int registrations;
+
+    @Param({"true", "false"})
+    public boolean incremental;
+
+    private Registration[] objects;
+    private ObjectStateTracker<Registration, RegistrationState> tracker;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.objects = BenchmarkSupport.newRegistrations(this.registrations);
+        this.tracker = BenchmarkSupport.newTracker().withIncrementalUpdates(this.incremental);
+        this.tracker.addObjects(this.objects);
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public void update() {
+        int current = this.next;
+        this.next = (current + 1 == this.objects.length) ? 0 : current + 1;
+        this.tracker.update(this.objects[current], null);
+    }
+}
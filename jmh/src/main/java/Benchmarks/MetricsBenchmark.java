@@ -0,0 +1,56 @@
+package Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import ObjectStateTracker.*;
+
+/**
+ * Compares the notifications and the full updates of a tracker without
+ * metrics ({@code off}), with metrics ({@code on}) and with metrics and Flight
+ * Recorder events ({@code events}). The events are only committed when a
+ * recording is running, as with {@code -prof jfr}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class MetricsBenchmark {
+
+    @Param({"100000"})
+    public int registrations;
+
+    @Param({"off", "on", "events"})
+    public String metrics;
+
+    private Registration[] objects;
+    private ObjectStateTracker<Registration, RegistrationState> tracker;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        TrackerMetrics<RegistrationState> trackerMetrics = null;
+        if (this.metrics.equals("off") == false) {
+            trackerMetrics = new TrackerMetrics<RegistrationState>().withEvents(this.metrics.equals("events"));
+        }
+        this.objects = BenchmarkSupport.newMixedRegistrations(this.registrations);
+        this.tracker = BenchmarkSupport.newTracker().withMetrics(trackerMetrics);
+        this.tracker.addObjects(this.objects);
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public void update() {
+        int current = this.next;
+        this.next = (current + 1 == this.objects.length) ? 0 : current + 1;
+        this.tracker.update(this.objects[current], Registration.PROPERTY_VALIDATED);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void updateStates() {
+        this.tracker.updateStates();
+    }
+}
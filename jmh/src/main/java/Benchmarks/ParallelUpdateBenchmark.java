@@ -0,0 +1,47 @@
+package Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import ObjectStateTracker.*;
+
+/**
+ * Measures the full reconcile of a million objects with updateStates
+ * ({@code parallelism} 0) and with parallelUpdateStates on a pool of 1 to 4
+ * threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ParallelUpdateBenchmark {
+
+    @Param({"1000000"})
+    public int registrations;
+
+    @Param({"0", "1", "2", "4"})
+    public int parallelism;
+
+    private ObjectStateTracker<Registration, RegistrationState> tracker;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.tracker = BenchmarkSupport.newTracker();
+        if (this.parallelism > 0) {
+            this.tracker.withParallelism(this.parallelism);
+        }
+        this.tracker.addObjects(BenchmarkSupport.newMixedRegistrations(this.registrations));
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public void updateStates() {
+        if (this.parallelism > 0) {
+            this.tracker.parallelUpdateStates();
+        } else {
+            this.tracker.updateStates();
+        }
+    }
+}
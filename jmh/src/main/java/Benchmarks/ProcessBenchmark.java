@@ -0,0 +1,70 @@
+package Benchmarks;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import ObjectStateTracker.*;
+import Process.Process;
+
+/**
+ * Measures adding trajectories to a process and reading its transition
+ * matrix, with the six states of the registrations and with a large matrix of
+ * 64 states. The trajectories are seeded random walks over the states, of 1
+ * to 8 visits. The memory allocated by each add is measured with
+ * {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ProcessBenchmark {
+
+    private static final int TRAJECTORIES = 1_000;
+
+    @Param({"6", "64"})
+    public int states;
+
+    private Integer[] values;
+    private List<Trajectory<Integer>> trajectories;
+    private Process<Integer> process;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(TrackerBenchmark.SEED);
+        this.values = new Integer[this.states];
+        for (int i = 0; i < this.states; i++) {
+            this.values[i] = i;
+        }
+
+        this.trajectories = new ArrayList<>();
+        for (int i = 0; i < TRAJECTORIES; i++) {
+            Trajectory<Integer> trajectory = new Trajectory<>();
+            int visits = 1 + random.nextInt(8);
+            for (int visit = 0; visit < visits; visit++) {
+                trajectory.add(this.values[random.nextInt(this.states)]);
+            }
+            this.trajectories.add(trajectory);
+        }
+
+        /* A process with all the edges of the trajectories, to be read */
+        this.process = new Process<>(this.values);
+        this.trajectories.forEach(this.process::add);
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public void add() {
+        int current = this.next;
+        this.next = (current + 1 == TRAJECTORIES) ? 0 : current + 1;
+        this.process.add(this.trajectories.get(current));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String render() {
+        return this.process.toString();
+    }
+}
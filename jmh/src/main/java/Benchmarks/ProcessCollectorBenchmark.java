@@ -0,0 +1,62 @@
+package Benchmarks;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import ObjectStateTracker.*;
+import Process.Process;
+
+/**
+ * Compares building a process from every trajectory of a tracker serially,
+ * with a sequential stream and with a parallel stream.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class ProcessCollectorBenchmark {
+
+    @Param({"1000000"})
+    public int registrations;
+
+    private ObjectStateTracker<Registration, RegistrationState> tracker;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Registration[] objects = BenchmarkSupport.newRegistrations(this.registrations);
+        this.tracker = BenchmarkSupport.newTracker();
+        this.tracker.addObjects(objects);
+        for (int i = 0; i < objects.length; i += 2) {
+            objects[i].setAffiliation("Arkham College");
+            objects[i].setValidated(true);
+        }
+
+        String expected = this.serial().toString();
+        if (this.sequential().toString().equals(expected) == false || this.parallel().toString().equals(expected) == false) {
+            throw new IllegalStateException("The processes are different");
+        }
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public Process<RegistrationState> serial() {
+        Process<RegistrationState> process = new Process<>(RegistrationState.values());
+        for (Registration r : this.tracker) {
+            process.add(this.tracker.trajectory(r));
+        }
+        return process;
+    }
+
+    @Benchmark
+    public Process<RegistrationState> sequential() {
+        return this.tracker.trajectories().map(Map.Entry::getValue).collect(Process.collector(RegistrationState.values()));
+    }
+
+    @Benchmark
+    public Process<RegistrationState> parallel() {
+        return this.tracker.trajectories().parallel().map(Map.Entry::getValue).collect(Process.collector(RegistrationState.values()));
+    }
+}
@@ -0,0 +1,74 @@
+package Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import ObjectStateTracker.*;
+
+/**
+ * Compares a full update of a tracker over the registrations of a seeded
+ * workload, with the predicates and with the rules of the table, and a full
+ * update of a table with the same rows, row by row and with the vector API.
+ * The forked JVM adds the module jdk.incubator.vector; if the processor has
+ * no vectors of 8 ints or more, both tables classify row by row, and the
+ * setup prints that the vectors are not available.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g", "--add-modules", "jdk.incubator.vector"})
+public class RegistrationTableBenchmark {
+
+    @Param({"1000000"})
+    public int registrations;
+
+    private ObjectStateTracker<Registration, RegistrationState> predicates;
+    private ObjectStateTracker<Registration, RegistrationState> rules;
+    private RegistrationTable scalar;
+    private RegistrationTable vectors;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RegistrationWorkload workload = new RegistrationWorkload(TrackerBenchmark.SEED, this.registrations);
+        workload.applyAll();
+        this.predicates = BenchmarkSupport.newTracker();
+        this.predicates.addObjects(workload.registrations());
+        this.rules = BenchmarkSupport.newTracker().withRules(RegistrationTable.registrationRules());
+        this.rules.addObjects(workload.registrations());
+        this.scalar = new RegistrationTable().withVectors(false);
+        this.vectors = new RegistrationTable();
+        for (Registration registration : workload.registrations()) {
+            this.scalar.add(registration);
+            this.vectors.add(registration);
+        }
+
+        this.vectors.updateStates();
+        System.out.println("Vectors available: " + RegistrationTable.vectorsAvailable() + ", rows classified with vectors: " + this.vectors.getVectorRows());
+        if (RegistrationTable.vectorsAvailable() == true && this.vectors.getVectorRows() == 0) {
+            throw new IllegalStateException("The vectors are not used");
+        }
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public void trackerPredicates() {
+        this.predicates.updateStates();
+    }
+
+    @Benchmark
+    public void trackerRules() {
+        this.rules.updateStates();
+    }
+
+    @Benchmark
+    public void tableScalar() {
+        this.scalar.updateStates();
+    }
+
+    @Benchmark
+    public void tableVectors() {
+        this.vectors.updateStates();
+    }
+}
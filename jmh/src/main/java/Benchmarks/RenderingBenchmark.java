@@ -0,0 +1,51 @@
+package Benchmarks;
+
+import java.io.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import Registration.*;
+import ObjectStateTracker.*;
+
+/**
+ * Measures the rendering of the whole tracker with 1k, 100k and 1M objects,
+ * both to a string and streamed to a writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class RenderingBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int registrations;
+
+    private ObjectStateTracker<Registration, RegistrationState> tracker;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Registration[] objects = BenchmarkSupport.newRegistrations(this.registrations);
+        this.tracker = BenchmarkSupport.newTracker();
+        this.tracker.addObjects(objects);
+
+        /* Move some of the objects to other states */
+        for (int i = 0; i < objects.length; i += 3) {
+            objects[i].setAffiliation("Arkham College");
+        }
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public void string(Blackhole blackhole) {
+        blackhole.consume(this.tracker.toString());
+    }
+
+    @Benchmark
+    public void print() throws IOException {
+        Writer out = new BufferedWriter(Writer.nullWriter());
+        this.tracker.print(out);
+        out.flush();
+    }
+}
@@ -0,0 +1,67 @@
+package Benchmarks;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import static Registration.RegistrationState.*;
+import ObjectStateTracker.*;
+
+/**
+ * Measures a stream of registrations that are added and finished over time,
+ * without retention and with a policy that evicts the finished registrations
+ * after five batches. Each iteration is a single shot over the whole stream,
+ * with a new tracker.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class RetentionBenchmark {
+
+    private static final int BATCHES = 100;
+    private static final int BATCH_SIZE = 10_000;
+
+    @Param({"false", "true"})
+    public boolean retention;
+
+    private ManualClock clock;
+    private ObjectStateTracker<Registration, RegistrationState> tracker;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        this.clock = new ManualClock();
+        this.tracker = BenchmarkSupport.newTracker().withClock(this.clock);
+        if (this.retention == true) {
+            this.tracker.withRetention(new RetentionPolicy<Registration, RegistrationState>().evictAfter(Duration.ofMillis(5), FINISHED, REJECTED));
+        }
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Adds each batch of registrations, and finishes the ones of the batch
+     * before.
+     *
+     * @return the tracker
+     */
+    @Benchmark
+    public ObjectStateTracker<Registration, RegistrationState> stream() {
+        Registration[] before = new Registration[0];
+        for (int batch = 0; batch < BATCHES; batch++) {
+            Registration[] registrations = new Registration[BATCH_SIZE];
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                registrations[i] = new Registration("Registration " + batch + "-" + i, RegistrationKind.STUDENT);
+            }
+            this.tracker.addObjects(registrations);
+            for (Registration r : before) {
+                r.setValidated(true);
+                r.pay(r.getTotalAmount());
+            }
+            before = registrations;
+            this.clock.advance(Duration.ofMillis(1));
+        }
+        return this.tracker;
+    }
+}
@@ -0,0 +1,119 @@
+package Benchmarks;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import ObjectStateTracker.*;
+
+/**
+ * Compares counting the objects of each state at a past instant with the
+ * transition index and by searching every trajectory, does the same for a
+ * snapshot of the members, and measures the state of a single trajectory at
+ * an instant and the creation of the index over the tracked trajectories.
+ * The instants go over the whole history of a seeded workload, one event per
+ * millisecond.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class SnapshotBenchmark {
+
+    private static final int INSTANTS = 1_000;
+
+    @Param({"200000"})
+    public int registrations;
+
+    private Registration[] objects;
+    private ObjectStateTracker<Registration, RegistrationState> indexed;
+    private ObjectStateTracker<Registration, RegistrationState> plain;
+    private Instant[] instants;
+    private int next;
+    private int nextObject;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        RegistrationWorkload workload = new RegistrationWorkload(TrackerBenchmark.SEED, this.registrations);
+        ManualClock clock = new ManualClock();
+        this.objects = workload.registrations();
+        this.indexed = BenchmarkSupport.newTracker().withClock(clock).withTransitionIndex(true);
+        this.plain = BenchmarkSupport.newTracker().withClock(clock);
+        this.indexed.addObjects(this.objects);
+        this.plain.addObjects(this.objects);
+        for (int event = 0; event < workload.events(); event++) {
+            clock.advance(Duration.ofMillis(1));
+            workload.apply(event);
+        }
+
+        long end = clock.epochNanos();
+        this.instants = new Instant[INSTANTS];
+        for (int i = 0; i < INSTANTS; i++) {
+            this.instants[i] = Instant.ofEpochSecond(0, end / INSTANTS * i);
+        }
+        if (this.indexed.countsAt(this.instants[INSTANTS / 2]).equals(this.plain.countsAt(this.instants[INSTANTS / 2])) == false
+                || this.indexed.snapshotAt(this.instants[INSTANTS / 2]).counts().equals(this.plain.countsAt(this.instants[INSTANTS / 2])) == false) {
+            throw new IllegalStateException("The counts are different");
+        }
+    }
+
+    /**
+     * Returns the next instant, going over all of them.
+     *
+     * @return the instant
+     */
+    private Instant nextInstant() {
+        int current = this.next;
+        this.next = (current + 1 == INSTANTS) ? 0 : current + 1;
+        return this.instants[current];
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public Map<RegistrationState, Integer> countsIndexed() {
+        return this.indexed.countsAt(this.nextInstant());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<RegistrationState, Integer> countsSearched() {
+        return this.plain.countsAt(this.nextInstant());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public StateSnapshot<Registration, RegistrationState> snapshot() {
+        return this.plain.snapshotAt(this.nextInstant());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public StateSnapshot<Registration, RegistrationState> snapshotIndexed() {
+        return this.indexed.snapshotAt(this.nextInstant());
+    }
+
+    @Benchmark
+    public RegistrationState trajectoryStateAt() {
+        int current = this.nextObject;
+        this.nextObject = (current + 1 == this.objects.length) ? 0 : current + 1;
+        return this.indexed.trajectory(this.objects[current]).stateAt(this.nextInstant());
+    }
+
+    /**
+     * Creates the index over the tracked trajectories, which come out of
+     * order, and counts once, which sorts them.
+     *
+     * @return the counts
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public Map<RegistrationState, Integer> indexCreation() {
+        Map<RegistrationState, Integer> counts = this.plain.withTransitionIndex(true).countsAt(this.nextInstant());
+        this.plain.withTransitionIndex(false);
+        return counts;
+    }
+}
@@ -0,0 +1,89 @@
+package Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import Registration.*;
+import ObjectStateTracker.*;
+import Process.Process;
+
+/**
+ * Measures the paths of a tracker in a steady state: it tracks the
+ * registrations of a seeded workload after all their changes, and each
+ * benchmark goes over them (or over the events of the workload) in order, so
+ * the objects and states seen are the same on every run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TrackerBenchmark {
+
+    /**
+     * Seed of the workload, so the baselines of different runs are comparable.
+     */
+    public static final long SEED = 20240501L;
+
+    @Param({"100000", "1000000"})
+    public int registrations;
+
+    private RegistrationWorkload workload;
+    private Registration[] objects;
+    private ObjectStateTracker<Registration, RegistrationState> tracker;
+    private Process<RegistrationState> process;
+    private int nextEvent;
+    private int nextObject;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        this.workload = new RegistrationWorkload(SEED, this.registrations);
+        this.objects = this.workload.registrations();
+        this.tracker = BenchmarkSupport.newTracker();
+        this.tracker.addObjects(this.objects);
+        this.workload.applyAll();
+        this.process = new Process<>(RegistrationState.values());
+    }
+
+    /**
+     * Returns the position of the next object, going over all of them.
+     *
+     * @return the position of the object
+     */
+    private int nextObject() {
+        int current = this.nextObject;
+        this.nextObject = (current + 1 == this.objects.length) ? 0 : current + 1;
+        return current;
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public void update() {
+        int event = this.nextEvent;
+        this.nextEvent = (event + 1 == this.workload.events()) ? 0 : event + 1;
+        this.tracker.update(this.workload.target(event), this.workload.property(event));
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void updateStates() {
+        this.tracker.updateStates();
+    }
+
+    @Benchmark
+    public Trajectory<RegistrationState> trajectory() {
+        return this.tracker.trajectory(this.objects[this.nextObject()]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void render(Blackhole blackhole) {
+        blackhole.consume(this.tracker.toString());
+    }
+
+    @Benchmark
+    public void processAdd() {
+        this.process.add(this.tracker.trajectory(this.objects[this.nextObject()]));
+    }
+}
@@ -0,0 +1,62 @@
+package Benchmarks;
+
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import static Registration.RegistrationState.*;
+import ObjectStateTracker.*;
+
+/**
+ * Compares the storage of a trajectory of seven transitions in the trajectory
+ * log, with the system and the monotonic clocks, and in the map of states and
+ * date-times used before. The memory allocated by each one is measured with
+ * {@code -prof gc}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TrajectoryBenchmark {
+
+    private static final RegistrationState[] PATH = {STARTED, FILLED, VALIDATED, FILLED, VALIDATED, PAYED, FINISHED};
+
+    private final TrajectoryClock monotonic = TrajectoryClock.monotonic();
+
+    /**
+     * Builds a trajectory of the path with the timestamps of a clock.
+     *
+     * @param clock the clock of the timestamps
+     * @return the trajectory
+     */
+    private static Trajectory<RegistrationState> trajectory(TrajectoryClock clock) {
+        Trajectory<RegistrationState> trajectory = new Trajectory<>();
+        for (RegistrationState state : PATH) {
+            trajectory.add(state, clock.epochNanos());
+        }
+        return trajectory;
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public Trajectory<RegistrationState> systemClock() {
+        return trajectory(TrajectoryClock.SYSTEM);
+    }
+
+    @Benchmark
+    public Trajectory<RegistrationState> monotonicClock() {
+        return trajectory(this.monotonic);
+    }
+
+    @Benchmark
+    public Map<RegistrationState, LocalDateTime> mapOfDateTimes() {
+        Map<RegistrationState, LocalDateTime> states = new LinkedHashMap<>();
+        for (RegistrationState state : PATH) {
+            states.put(state, LocalDateTime.now());
+        }
+        return states;
+    }
+}
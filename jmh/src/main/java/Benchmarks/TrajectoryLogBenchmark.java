@@ -0,0 +1,80 @@
+package Benchmarks;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import ObjectStateTracker.*;
+
+/**
+ * Compares the two ways of getting back the tracker after a restart:
+ * re-adding the objects, which checks every function again and loses the
+ * history, and replaying the trajectory log. The log is written once, with
+ * the initial states and a transition of half of the registrations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class TrajectoryLogBenchmark {
+
+    @Param({"200000"})
+    public int registrations;
+
+    private Path directory;
+    private Registration[] objects;
+    private Map<Registration, Long> ids;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        this.directory = Files.createTempDirectory("trajectory-log");
+        this.objects = BenchmarkSupport.newRegistrations(this.registrations);
+        this.ids = new HashMap<>();
+        for (int i = 0; i < this.objects.length; i++) {
+            this.ids.put(this.objects[i], (long) i);
+        }
+
+        try (TrajectoryLog<Registration, RegistrationState> log = new TrajectoryLog<>(this.directory, this.ids::get, RegistrationState.values())) {
+            ObjectStateTracker<Registration, RegistrationState> tracker = BenchmarkSupport.newTracker().withListener(log);
+            tracker.addObjects(this.objects);
+            for (int i = 0; i < this.objects.length; i += 2) {
+                this.objects[i].setAffiliation("Arkham College");
+                this.objects[i].setValidated(true);
+            }
+        }
+        if (this.readd().toString().equals(this.replay().toString()) == false) {
+            throw new IllegalStateException("The trackers are different");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(this.directory)) {
+            for (Path segment : segments) {
+                Files.delete(segment);
+            }
+        }
+        Files.delete(this.directory);
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public ObjectStateTracker<Registration, RegistrationState> readd() {
+        ObjectStateTracker<Registration, RegistrationState> readded = BenchmarkSupport.newTracker();
+        readded.addObjects(this.objects);
+        return readded;
+    }
+
+    @Benchmark
+    public ObjectStateTracker<Registration, RegistrationState> replay() throws IOException {
+        ObjectStateTracker<Registration, RegistrationState> restored = BenchmarkSupport.newTracker();
+        try (TrajectoryLog<Registration, RegistrationState> log = new TrajectoryLog<>(this.directory, this.ids::get, RegistrationState.values())) {
+            restored.restore(log, id -> this.objects[(int) id]);
+        }
+        return restored;
+    }
+}
@@ -0,0 +1,73 @@
+package Benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import Registration.*;
+import ObjectStateTracker.*;
+
+/**
+ * Measures the paths that change the registrations, so each iteration needs a
+ * new workload: adding all the registrations to a tracker, and applying the
+ * whole stream of events to them while the tracker observes them. Each
+ * iteration is a single shot, and its time is divided by the number of
+ * objects or events to get the time of each one.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class WorkloadBenchmark {
+
+    /**
+     * A new workload and an empty tracker.
+     */
+    @State(Scope.Benchmark)
+    public static class Untracked {
+
+        @Param({"100000", "1000000"})
+        public int registrations;
+
+        RegistrationWorkload workload;
+        ObjectStateTracker<Registration, RegistrationState> tracker;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            this.workload = new RegistrationWorkload(TrackerBenchmark.SEED, this.registrations);
+            this.tracker = BenchmarkSupport.newTracker();
+        }
+    }
+
+    /**
+     * A new workload whose registrations are already tracked, before any event.
+     */
+    @State(Scope.Benchmark)
+    public static class Tracked {
+
+        @Param({"100000", "1000000"})
+        public int registrations;
+
+        RegistrationWorkload workload;
+        ObjectStateTracker<Registration, RegistrationState> tracker;
+
+        @Setup(Level.Iteration)
+        public void setUp() {
+            this.workload = new RegistrationWorkload(TrackerBenchmark.SEED, this.registrations);
+            this.tracker = BenchmarkSupport.newTracker();
+            this.tracker.addObjects(this.workload.registrations());
+        }
+    }
+
+    /*____________________________________________________________________*/
+    @Benchmark
+    public ObjectStateTracker<Registration, RegistrationState> addObjects(Untracked state) {
+        state.tracker.addObjects(state.workload.registrations());
+        return state.tracker;
+    }
+
+    @Benchmark
+    public ObjectStateTracker<Registration, RegistrationState> applyEvents(Tracked state) {
+        state.workload.applyAll();
+        return state.tracker;
+    }
+}
@@ -0,0 +1,82 @@
+package Benchmarks;
+
+import Registration.*;
+import static Registration.RegistrationKind.*;
+import ObjectStateTracker.*;
+import Tests.RegistrationFixture;
+
+/**
+ * Common helpers of the benchmarks: the tracker of the registration process,
+ * with the predicates of the testers, and simple generators of
+ * registrations.
+ */
+public class BenchmarkSupport {
+
+    /**
+     * Creates a tracker with the states and rules of the registration process,
+     * the same one the testers use (see {@link RegistrationFixture}).
+     *
+     * @return the configured tracker
+     */
+    public static ObjectStateTracker<Registration, RegistrationState> newTracker() {
+        return RegistrationFixture.newTracker();
+    }
+
+    /**
+     * Creates the compiled rules equivalent to the predicates of
+     * {@link #newTracker()}, the same ones that classify the rows of a
+     * {@link RegistrationTable}.
+     *
+     * @return the rules of the registration process
+     */
+    public static StateRules<Registration, RegistrationState> newRules() {
+        return RegistrationTable.registrationRules();
+    }
+
+    /**
+     * Creates the given number of registrations, with distinct names.
+     *
+     * @param count the number of registrations
+     * @return the registrations
+     */
+    public static Registration[] newRegistrations(int count) {
+        Registration[] registrations = new Registration[count];
+        RegistrationKind[] kinds = {FULL, MEMBER, STUDENT};
+
+        for (int i = 0; i < count; i++) {
+            registrations[i] = new Registration("Registration " + i, kinds[i % kinds.length]);
+        }
+        return registrations;
+    }
+
+    /**
+     * Creates the given number of registrations, spread over all the states of
+     * the registration process.
+     *
+     * @param count the number of registrations
+     * @return the registrations
+     */
+    public static Registration[] newMixedRegistrations(int count) {
+        Registration[] registrations = newRegistrations(count);
+
+        for (int i = 0; i < count; i++) {
+            Registration r = registrations[i];
+            switch (i % 6) {
+                case 1 -> r.setAffiliation("Arkham College");
+                case 2 -> r.pay(r.getTotalAmount());
+                case 3 -> r.setValidated(true);
+                case 4 -> {
+                    r.setValidated(true);
+                    r.pay(r.getTotalAmount());
+                }
+                case 5 -> {
+                    r.setValidated(true);
+                    r.pay(1);
+                }
+                default -> {
+                }
+            }
+        }
+        return registrations;
+    }
+}
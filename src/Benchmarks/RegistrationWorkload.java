@@ -0,0 +1,230 @@
+package Benchmarks;
+
+import java.util.*;
+import Registration.*;
+import static Registration.RegistrationKind.*;
+
+/**
+ * A seeded generator of registrations and of a stream of changes to them, so
+ * the benchmarks run on the same workload every time. Each registration
+ * follows its own life: most of them fill the affiliation, pay (at once or in
+ * installments) and are validated, in a realistic order; some stop halfway,
+ * pay only part of the price, or are validated before paying. The changes of
+ * all the registrations are interleaved at random in a single stream.
+ *
+ * The stream is kept in primitive arrays (target, kind of change and amount
+ * of each event), so it can hold millions of events.
+ */
+public class RegistrationWorkload {
+
+    /**
+     * Kind of the events: sets the affiliation.
+     */
+    public static final byte AFFILIATION = 0;
+
+    /**
+     * Kind of the events: pays an amount.
+     */
+    public static final byte PAY = 1;
+
+    /**
+     * Kind of the events: validates the registration.
+     */
+    public static final byte VALIDATE = 2;
+
+    /**
+     * Kind of the events: removes the validation of the registration.
+     */
+    public static final byte INVALIDATE = 3;
+
+    private static final RegistrationKind[] KINDS = {FULL, FULL, MEMBER, MEMBER, MEMBER, STUDENT, STUDENT, STUDENT, STUDENT, STUDENT};
+    private static final String[] AFFILIATIONS = {"University of Miskatonic", "Arkham College", "Innsmouth Institute", "Dunwich School"};
+
+    private final Registration[] registrations;
+
+    /* Stream of events: the registration, the kind of change and the amount paid */
+    private int[] targets;
+    private byte[] kinds;
+    private int[] amounts;
+    private int size;
+
+    /**
+     * Generates the specified number of registrations and their stream of
+     * events. The same seed always gives the same workload.
+     *
+     * @param seed the seed of the generator
+     * @param count the number of registrations
+     */
+    public RegistrationWorkload(long seed, int count) {
+        SplittableRandom random = new SplittableRandom(seed);
+        this.registrations = new Registration[count];
+        this.targets = new int[count * 4];
+        this.kinds = new byte[count * 4];
+        this.amounts = new int[count * 4];
+
+        /* The life of each registration, as a list of events */
+        int[][] lives = new int[count][];
+        for (int i = 0; i < count; i++) {
+            RegistrationKind kind = KINDS[random.nextInt(KINDS.length)];
+            this.registrations[i] = new Registration("Registration " + seed + "-" + i, kind);
+            lives[i] = life(random, (int) kind.getPrice());
+        }
+
+        /* Interleave them, taking each time the next event of a random registration (some have none) */
+        int[] pending = new int[count];
+        int[] next = new int[count];
+        int active = 0;
+        for (int i = 0; i < count; i++) {
+            if (lives[i].length > 0) {
+                pending[active++] = i;
+            }
+        }
+        while (active > 0) {
+            int chosen = random.nextInt(active);
+            int target = pending[chosen];
+            int event = lives[target][next[target]++];
+            this.add(target, (byte) (event & 0xFF), event >>> 8);
+
+            if (next[target] == lives[target].length) {
+                pending[chosen] = pending[--active];
+            }
+        }
+    }
+
+    /**
+     * Generates the events of a registration, each one encoded as the amount
+     * shifted 8 bits and the kind of change.
+     *
+     * @param random the generator
+     * @param price the price of the registration
+     * @return the events of the registration
+     */
+    private static int[] life(SplittableRandom random, int price) {
+        List<Integer> events = new ArrayList<>();
+        double roll = random.nextDouble();
+
+        /* 85% fill the affiliation */
+        if (random.nextDouble() < 0.85) {
+            events.add((int) AFFILIATION);
+        }
+
+        /* 65% pay the price, at once or in installments; 10% only a part of it */
+        List<Integer> payments = new ArrayList<>();
+        if (roll < 0.65) {
+            int installments = (random.nextDouble() < 0.8) ? 1 : 2 + random.nextInt(2);
+            int left = price;
+            for (int i = 1; i < installments; i++) {
+                int amount = price / installments;
+                payments.add((amount << 8) | PAY);
+                left -= amount;
+            }
+            payments.add((left << 8) | PAY);
+        } else if (roll < 0.75) {
+            payments.add(((price / 2) << 8) | PAY);
+        }
+
+        /* 70% are validated, usually after paying; a few lose the validation */
+        boolean validated = random.nextDouble() < 0.7;
+        if (validated == true && random.nextDouble() < 0.2) {
+            events.add((int) VALIDATE);
+            events.addAll(payments);
+        } else {
+            events.addAll(payments);
+            if (validated == true) {
+                events.add((int) VALIDATE);
+            }
+        }
+        if (validated == true && random.nextDouble() < 0.05) {
+            events.add((int) INVALIDATE);
+        }
+
+        return events.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    /**
+     * Adds an event at the end of the stream.
+     *
+     * @param target the registration
+     * @param kind the kind of change
+     * @param amount the amount paid
+     */
+    private void add(int target, byte kind, int amount) {
+        if (this.size == this.targets.length) {
+            this.targets = Arrays.copyOf(this.targets, this.size * 2);
+            this.kinds = Arrays.copyOf(this.kinds, this.size * 2);
+            this.amounts = Arrays.copyOf(this.amounts, this.size * 2);
+        }
+        this.targets[this.size] = target;
+        this.kinds[this.size] = kind;
+        this.amounts[this.size] = amount;
+        this.size++;
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns the registrations, without any change applied.
+     *
+     * @return the registrations
+     */
+    public Registration[] registrations() {
+        return this.registrations;
+    }
+
+    /**
+     * Returns the number of events of the stream.
+     *
+     * @return the number of events
+     */
+    public int events() {
+        return this.size;
+    }
+
+    /**
+     * Returns the registration changed by an event.
+     *
+     * @param event the position of the event in the stream
+     * @return the registration
+     */
+    public Registration target(int event) {
+        return this.registrations[this.targets[event]];
+    }
+
+    /**
+     * Returns the name of the property changed by an event, as it is sent to
+     * the observers.
+     *
+     * @param event the position of the event in the stream
+     * @return the name of the property
+     */
+    public String property(int event) {
+        return switch (this.kinds[event]) {
+            case AFFILIATION -> Registration.PROPERTY_AFFILIATION;
+            case PAY -> Registration.PROPERTY_AMOUNT_PAYED;
+            default -> Registration.PROPERTY_VALIDATED;
+        };
+    }
+
+    /**
+     * Applies an event to its registration, which notifies its observers.
+     *
+     * @param event the position of the event in the stream
+     */
+    public void apply(int event) {
+        Registration target = this.target(event);
+        switch (this.kinds[event]) {
+            case AFFILIATION -> target.setAffiliation(AFFILIATIONS[this.targets[event] % AFFILIATIONS.length]);
+            case PAY -> target.pay(this.amounts[event]);
+            case VALIDATE -> target.setValidated(true);
+            default -> target.setValidated(false);
+        }
+    }
+
+    /**
+     * Applies all the events of the stream, in order.
+     */
+    public void applyAll() {
+        for (int event = 0; event < this.size; event++) {
+            this.apply(event);
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package ObjectStateTracker;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An observer that delivers the notifications to another observer
+ * asynchronously. The notifications are put on a bounded queue and a single
+ * consumer thread delivers them in order, so the notifying threads do not
+ * wait for the observer and the observer is only called from one thread.
+ * When the queue is full, the {@link Backpressure} policy decides what to do.
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+public class AsyncNotifier implements Observer, AutoCloseable {
+
+    private final Observer target;
+    private final int capacity;
+    private final Backpressure policy;
+
+    /* Queued notifications, and the queued notification of each object when they are coalesced */
+    private final ArrayDeque<Notification> queue = new ArrayDeque<>();
+    private final Map<Observable, Notification> queued = new IdentityHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = this.lock.newCondition();
+    private final Condition notFull = this.lock.newCondition();
+    private final Condition idle = this.lock.newCondition();
+    private boolean delivering;
+    private boolean closed;
+
+    /* Metrics */
+    private long delivered, dropped, coalesced;
+    private long lastLag, maxLag;
+
+    private final Thread consumer;
+
+    /**
+     * A queued notification.
+     */
+    private static class Notification {
+
+        private final Observable object;
+        private Object arg;
+        private final long queuedAt;
+
+        Notification(Observable object, Object arg) {
+            this.object = object;
+            this.arg = arg;
+            this.queuedAt = System.nanoTime();
+        }
+    }
+
+    /**
+     * Constructs an AsyncNotifier and starts its consumer thread.
+     *
+     * @param target the observer that receives the notifications
+     * @param capacity the maximum number of queued notifications
+     * @param policy what to do when the queue is full
+     * @throws IllegalArgumentException if the capacity is not positive
+     */
+    public AsyncNotifier(Observer target, int capacity, Backpressure policy) throws IllegalArgumentException {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException();
+        }
+
+        this.target = target;
+        this.capacity = capacity;
+        this.policy = policy;
+        this.consumer = new Thread(this::consume, "async-notifier");
+        this.consumer.setDaemon(true);
+        this.consumer.start();
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Queues a notification, to be delivered by the consumer thread.
+     *
+     * @param object the observed object that triggered the update
+     * @param arg an argument passed by the observed object (optional)
+     * @throws IllegalStateException if the notifier is closed, or is closed
+     * while waiting for room in the queue
+     */
+    @Override
+    public void update(Observable object, Object arg) throws IllegalStateException {
+        this.lock.lock();
+        try {
+            if (this.closed == true) {
+                throw new IllegalStateException();
+            }
+
+            /* A pending notification of the same object is merged */
+            if (this.policy == Backpressure.COALESCE) {
+                Notification pending = this.queued.get(object);
+                if (pending != null) {
+                    if (Objects.equals(pending.arg, arg) == false) {
+                        pending.arg = null;
+                    }
+                    this.coalesced++;
+                    return;
+                }
+            }
+
+            /* Make room in the queue, as the policy says */
+            while (this.queue.size() >= this.capacity) {
+                if (this.policy == Backpressure.DROP_OLDEST) {
+                    this.queue.removeFirst();
+                    this.dropped++;
+                } else {
+                    this.notFull.awaitUninterruptibly();
+
+                    /* The consumer may have stopped while waiting: the notification would be lost */
+                    if (this.closed == true) {
+                        throw new IllegalStateException();
+                    }
+                }
+            }
+
+            Notification notification = new Notification(object, arg);
+            this.queue.addLast(notification);
+            if (this.policy == Backpressure.COALESCE) {
+                this.queued.put(object, notification);
+            }
+            this.notEmpty.signal();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Delivers the queued notifications until the notifier is closed. It is
+     * run by the consumer thread.
+     */
+    private void consume() {
+        while (true) {
+            Notification notification;
+
+            /* Wait for the next notification */
+            this.lock.lock();
+            try {
+                while (this.queue.isEmpty() == true && this.closed == false) {
+                    this.notEmpty.awaitUninterruptibly();
+                }
+                if (this.queue.isEmpty() == true) {
+                    return;
+                }
+                notification = this.queue.removeFirst();
+                this.queued.remove(notification.object);
+                this.delivering = true;
+                this.notFull.signal();
+            } finally {
+                this.lock.unlock();
+            }
+
+            /* Deliver it without holding the lock; a failure does not stop the next ones */
+            try {
+                this.target.update(notification.object, notification.arg);
+            } catch (RuntimeException e) {
+                Thread current = Thread.currentThread();
+                current.getUncaughtExceptionHandler().uncaughtException(current, e);
+            } finally {
+                this.lock.lock();
+                try {
+                    this.delivering = false;
+                    this.delivered++;
+                    this.lastLag = System.nanoTime() - notification.queuedAt;
+                    this.maxLag = Math.max(this.maxLag, this.lastLag);
+                    if (this.queue.isEmpty() == true) {
+                        this.idle.signalAll();
+                    }
+                } finally {
+                    this.lock.unlock();
+                }
+            }
+        }
+    }
+
+    /**
+     * Waits until every queued notification has been delivered.
+     *
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void awaitQuiescence() throws InterruptedException {
+        this.lock.lock();
+        try {
+            while (this.queue.isEmpty() == false || this.delivering == true) {
+                this.idle.await();
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Stops accepting notifications, delivers the ones already queued and
+     * stops the consumer thread. The producers waiting for room in the queue
+     * fail with an IllegalStateException. If the thread is interrupted while
+     * waiting for the consumer, it returns at once with the interrupt status
+     * set, and the consumer ends on its own after the queued notifications.
+     */
+    @Override
+    public void close() {
+        this.lock.lock();
+        try {
+            this.closed = true;
+            this.notEmpty.signal();
+            this.notFull.signalAll();
+        } finally {
+            this.lock.unlock();
+        }
+
+        try {
+            this.consumer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns the number of notifications waiting in the queue.
+     *
+     * @return the number of queued notifications
+     */
+    public int queueDepth() {
+        this.lock.lock();
+        try {
+            return this.queue.size();
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how long the oldest queued notification has been waiting.
+     *
+     * @param unit the unit of the result
+     * @return the wait of the oldest notification, or 0 if the queue is empty
+     */
+    public long currentLag(TimeUnit unit) {
+        this.lock.lock();
+        try {
+            Notification oldest = this.queue.peekFirst();
+            return (oldest == null) ? 0 : unit.convert(System.nanoTime() - oldest.queuedAt, TimeUnit.NANOSECONDS);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns how long the last delivered notification waited, from the time
+     * it was queued until it was delivered.
+     *
+     * @param unit the unit of the result
+     * @return the lag of the last delivered notification
+     */
+    public long lastLag(TimeUnit unit) {
+        this.lock.lock();
+        try {
+            return unit.convert(this.lastLag, TimeUnit.NANOSECONDS);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the maximum lag of the delivered notifications.
+     *
+     * @param unit the unit of the result
+     * @return the maximum lag
+     */
+    public long maxLag(TimeUnit unit) {
+        this.lock.lock();
+        try {
+            return unit.convert(this.maxLag, TimeUnit.NANOSECONDS);
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of delivered notifications.
+     *
+     * @return the number of delivered notifications
+     */
+    public long delivered() {
+        this.lock.lock();
+        try {
+            return this.delivered;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of notifications dropped because the queue was full.
+     *
+     * @return the number of dropped notifications
+     */
+    public long dropped() {
+        this.lock.lock();
+        try {
+            return this.dropped;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the number of notifications merged with a queued one.
+     *
+     * @return the number of coalesced notifications
+     */
+    public long coalesced() {
+        this.lock.lock();
+        try {
+            return this.coalesced;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+}
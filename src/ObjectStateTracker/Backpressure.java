@@ -0,0 +1,27 @@
+package ObjectStateTracker;
+
+/**
+ * What an {@link AsyncNotifier} does with a new notification when its queue
+ * is full.
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+public enum Backpressure {
+
+    /**
+     * The notifying thread waits until there is room in the queue
+     */
+    BLOCK,
+
+    /**
+     * The oldest notification of the queue is dropped
+     */
+    DROP_OLDEST,
+
+    /**
+     * A notification of an object that is already in the queue is merged with
+     * it, so each object is queued once; if the queue is full of other objects
+     * the notifying thread waits
+     */
+    COALESCE;
+}
@@ -0,0 +1,119 @@
+package ObjectStateTracker;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered reader of the checkpoints written by {@link CheckpointOutput}. It
+ * is not synchronized, since it is used by a single thread.
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+final class CheckpointInput {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final InputStream in;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+
+    /**
+     * Constructs a reader over the specified input.
+     *
+     * @param in the input to read from
+     */
+    CheckpointInput(InputStream in) {
+        this.in = in;
+    }
+
+    /**
+     * Reads a byte.
+     *
+     * @return the byte read, between 0 and 255
+     * @throws IOException if the input fails or it has ended
+     */
+    int readByte() throws IOException {
+        if (this.position == this.limit) {
+            this.limit = Math.max(this.in.read(this.buffer), 0);
+            this.position = 0;
+            if (this.limit == 0) {
+                throw new EOFException();
+            }
+        }
+        return this.buffer[this.position++] & 0xFF;
+    }
+
+    /**
+     * Reads a number with a fixed width of 8 bytes, highest byte first.
+     *
+     * @return the number read
+     * @throws IOException if the input fails or it has ended
+     */
+    long readLong() throws IOException {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | this.readByte();
+        }
+        return value;
+    }
+
+    /**
+     * Reads a non-negative number.
+     *
+     * @return the number read
+     * @throws IOException if the input fails or the number is malformed
+     */
+    long readUnsigned() throws IOException {
+        long value = 0;
+
+        for (int shift = 0; shift < 64; shift += 7) {
+            int current = this.readByte();
+            value |= (long) (current & 0x7F) << shift;
+            if ((current & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException();
+    }
+
+    /**
+     * Reads a number that may be negative.
+     *
+     * @return the number read
+     * @throws IOException if the input fails or the number is malformed
+     */
+    long readSigned() throws IOException {
+        long value = this.readUnsigned();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a non-negative number that must be lower than a bound.
+     *
+     * @param bound the bound of the number
+     * @return the number read
+     * @throws IOException if the input fails or the number is malformed
+     */
+    int readBelow(long bound) throws IOException {
+        long value = this.readUnsigned();
+        if (value >= bound) {
+            throw new StreamCorruptedException();
+        }
+        return (int) value;
+    }
+
+    /**
+     * Reads a string, as its length and its UTF-8 bytes.
+     *
+     * @return the string read
+     * @throws IOException if the input fails or the string is malformed
+     */
+    String readString() throws IOException {
+        byte[] bytes = new byte[this.readBelow(BUFFER_SIZE)];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) this.readByte();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,107 @@
+package ObjectStateTracker;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered writer of the checkpoints of a tracker. The numbers are written
+ * with a variable-length encoding: seven bits per byte, with the highest bit
+ * set on every byte but the last one. Signed numbers are zig-zag encoded
+ * first, so small negative numbers are short too. Unlike the buffered
+ * streams of java.io it is not synchronized, since it is used by a single
+ * thread.
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+final class CheckpointOutput {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final OutputStream out;
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+
+    /**
+     * Constructs a writer over the specified output.
+     *
+     * @param out the output to write to
+     */
+    CheckpointOutput(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes a byte.
+     *
+     * @param value the byte to write, in the lowest 8 bits
+     * @throws IOException if the output fails
+     */
+    void writeByte(int value) throws IOException {
+        if (this.position == BUFFER_SIZE) {
+            this.out.write(this.buffer, 0, this.position);
+            this.position = 0;
+        }
+        this.buffer[this.position++] = (byte) value;
+    }
+
+    /**
+     * Writes a number with a fixed width of 8 bytes, highest byte first.
+     *
+     * @param value the number to write
+     * @throws IOException if the output fails
+     */
+    void writeLong(long value) throws IOException {
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            this.writeByte((int) (value >>> shift));
+        }
+    }
+
+    /**
+     * Writes a non-negative number.
+     *
+     * @param value the number to write
+     * @throws IOException if the output fails
+     */
+    void writeUnsigned(long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            this.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        this.writeByte((int) value);
+    }
+
+    /**
+     * Writes a number that may be negative.
+     *
+     * @param value the number to write
+     * @throws IOException if the output fails
+     */
+    void writeSigned(long value) throws IOException {
+        this.writeUnsigned((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a string, as its length and its UTF-8 bytes.
+     *
+     * @param value the string to write
+     * @throws IOException if the output fails
+     */
+    void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        this.writeUnsigned(bytes.length);
+        for (byte current : bytes) {
+            this.writeByte(current);
+        }
+    }
+
+    /**
+     * Writes the buffered bytes to the output, and flushes it.
+     *
+     * @throws IOException if the output fails
+     */
+    void flush() throws IOException {
+        this.out.write(this.buffer, 0, this.position);
+        this.position = 0;
+        this.out.flush();
+    }
+}
@@ -0,0 +1,108 @@
+package ObjectStateTracker;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An ObjectStateTracker that can be notified from many threads at the same
+ * time. The objects and the members of each state are kept in concurrent
+ * collections, and each object is re-evaluated while holding the lock of its
+ * own trajectory, so the transitions of an object are never lost nor mixed,
+ * and the updates of different objects run in parallel.
+ *
+ * The states and their functions must be set before the tracker is shared
+ * between threads, and the functions must be safe to call from any thread.
+ * The trajectories returned by {@link #trajectory(Observable)} must be read
+ * while holding their lock if other threads can still update them. The
+ * objects of a state are listed in no particular order. An object that is
+ * removed is not updated anymore, even by the threads that were notified
+ * before.
+ *
+ * @param <O> the type of the observable objects being tracked
+ * @param <S> the type of the states associated with the objects
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+public class ConcurrentObjectStateTracker<O extends Observable, S> extends ObjectStateTracker<O, S> {
+
+    /**
+     * Constructs a ConcurrentObjectStateTracker with the specified states.
+     *
+     * @param states the states to be tracked
+     */
+    public ConcurrentObjectStateTracker(S... states) {
+        super(new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), ConcurrentHashMap::newKeySet, states);
+    }
+
+    /**
+     * Re-evaluates a single object while holding the lock of its trajectory.
+     *
+     * @param object the object to re-evaluate
+     * @param values the object whose values are evaluated
+     * @param objectTrajectory the trajectory of the object
+     * @param property the name of the changed property, or null if it is
+     * unknown
+     */
+    @Override
+    protected void updateState(O object, O values, Trajectory<S> objectTrajectory, String property) {
+        synchronized (objectTrajectory) {
+            if (this.trajectory(object) == objectTrajectory) {
+                super.updateState(object, values, objectTrajectory, property);
+            }
+        }
+    }
+
+    /**
+     * Adds a state already evaluated to the trajectory of an object while
+     * holding the lock of the trajectory.
+     *
+     * @param object the object
+     * @param objectTrajectory the trajectory of the object
+     * @param newState the current state of the object
+     */
+    @Override
+    protected void applyState(O object, Trajectory<S> objectTrajectory, S newState) {
+        synchronized (objectTrajectory) {
+            if (this.trajectory(object) == objectTrajectory) {
+                super.applyState(object, objectTrajectory, newState);
+            }
+        }
+    }
+
+    /**
+     * Stops tracking an object while holding the lock of its trajectory, so it
+     * is not removed in the middle of an update.
+     *
+     * @param object the object to remove
+     * @return the trajectory of the object, or null if it was not tracked
+     */
+    @Override
+    public Trajectory<S> removeObject(O object) {
+        Trajectory<S> objectTrajectory = this.trajectory(object);
+        if (objectTrajectory == null) {
+            return null;
+        }
+
+        synchronized (objectTrajectory) {
+            return super.removeObject(object);
+        }
+    }
+
+    /**
+     * Returns the current state of the specified object.
+     *
+     * @param o the object to get the state for
+     * @return the current state of the object, or null if it is not tracked
+     */
+    @Override
+    public S stateOf(O o) {
+        Trajectory<S> objectTrajectory = this.trajectory(o);
+        if (objectTrajectory == null) {
+            return null;
+        }
+
+        synchronized (objectTrajectory) {
+            return objectTrajectory.last();
+        }
+    }
+}
@@ -0,0 +1,398 @@
+package ObjectStateTracker;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * A tracker specialized for enum states. The predicates are kept in an array
+ * indexed by the ordinal of the states, each tracked object gets a dense
+ * identifier, its current state is kept as a short, and the objects of each
+ * state are kept in a bitset, so counting or listing the objects of a state
+ * does not need to check every object.
+ *
+ * It can replace an {@link ObjectStateTracker} whose states are an enum and
+ * whose predicates are checked in order, with listeners and removal of
+ * objects. It does not support the other features of ObjectStateTracker:
+ * metrics, retention policies, checkpoints, logs and transition indexes.
+ * The identifiers of the removed objects are not reused.
+ *
+ * @param <O> the type of the observable objects being tracked
+ * @param <E> the enum type of the states associated with the objects
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+public class EnumStateTracker<O extends Observable, E extends Enum<E>> implements Iterable<O>, Observer {
+
+    private static final short NO_STATE = -1;
+    private static final int INITIAL_CAPACITY = 16;
+
+    /* States, predicates indexed by ordinal, order of evaluation and default state */
+    private final E[] states;
+    private final Predicate<? super O>[] predicates;
+    private final int[] ruleOrder;
+    private int ruleCount;
+    private short defaultState = NO_STATE;
+
+    /* Source of the timestamps of the trajectories */
+    private TrajectoryClock clock = TrajectoryClock.MONOTONIC;
+
+    /* Objects with their dense identifier, trajectory and current state */
+    private final Map<O, Integer> ids = new HashMap<>();
+    private final List<O> objects = new ArrayList<>();
+    private final List<Trajectory<E>> trajectories = new ArrayList<>();
+    private short[] current = new short[INITIAL_CAPACITY];
+
+    /* Objects of each state, indexed by ordinal */
+    private final BitSet[] members;
+    private final int[] counts;
+
+    /* Listeners of the transitions */
+    private final List<TransitionListener<? super O, E>> listeners = new ArrayList<>();
+
+    /**
+     * Constructs an EnumStateTracker with all the constants of the specified
+     * enum as states.
+     *
+     * @param stateType the enum type of the states
+     */
+    public EnumStateTracker(Class<E> stateType) {
+        this.states = stateType.getEnumConstants();
+        this.predicates = newPredicates(this.states.length);
+        this.ruleOrder = new int[this.states.length];
+        this.members = new BitSet[this.states.length];
+        this.counts = new int[this.states.length];
+
+        for (int i = 0; i < this.states.length; i++) {
+            this.members[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Creates the array of predicates. A generic array can not be created, so
+     * it is created with the erased type.
+     *
+     * @param <O> the type of the objects
+     * @param length the number of states
+     * @return the array of predicates
+     */
+    @SuppressWarnings("unchecked")
+    private static <O> Predicate<? super O>[] newPredicates(int length) {
+        return (Predicate<? super O>[]) new Predicate<?>[length];
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Adds a state and its associated function to the EnumStateTracker. The
+     * states are checked in the order they are added.
+     *
+     * @param state the state to be added
+     * @param function the function that determines if an object is in the state
+     * @return the EnumStateTracker instance
+     */
+    public EnumStateTracker<O, E> withState(E state, Predicate<O> function) {
+        int ordinal = state.ordinal();
+
+        /* A new state is checked after the ones added before */
+        if (this.predicates[ordinal] == null) {
+            this.ruleOrder[this.ruleCount++] = ordinal;
+        }
+        this.predicates[ordinal] = function;
+        return this;
+    }
+
+    /**
+     * Sets the default state for objects that do not match any other state.
+     *
+     * @param state the default state to be set
+     * @return the EnumStateTracker instance
+     */
+    public EnumStateTracker<O, E> elseState(E state) {
+        this.defaultState = (short) state.ordinal();
+        return this;
+    }
+
+    /**
+     * Sets the clock that gives the timestamps of the transitions. By default
+     * the shared {@link TrajectoryClock#MONOTONIC} clock is used.
+     *
+     * @param clock the clock of the trajectories
+     * @return the EnumStateTracker instance
+     */
+    public EnumStateTracker<O, E> withClock(TrajectoryClock clock) {
+        this.clock = clock;
+        return this;
+    }
+
+    /**
+     * Adds a listener that is called after every transition of the tracked
+     * objects, including the initial state of the new objects.
+     *
+     * @param listener the listener to be added
+     * @return the EnumStateTracker instance
+     */
+    public EnumStateTracker<O, E> withListener(TransitionListener<? super O, E> listener) {
+        this.listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Gets the ordinal of the current state of the specified object.
+     *
+     * @param object the object to get the state for
+     * @return the ordinal of the state, or -1 if there is no state
+     */
+    private short getCurrentState(O object) {
+        for (int i = 0; i < this.ruleCount; i++) {
+            int ordinal = this.ruleOrder[i];
+            if (this.predicates[ordinal].test(object) == true) {
+                return (short) ordinal;
+            }
+        }
+        return this.defaultState;
+    }
+
+    /**
+     * Returns the state with the specified ordinal.
+     *
+     * @param ordinal the ordinal of the state
+     * @return the state, or null if the ordinal is -1
+     */
+    private E stateOf(short ordinal) {
+        return (ordinal == NO_STATE) ? null : this.states[ordinal];
+    }
+
+    /**
+     * Adds objects to be tracked by the EnumStateTracker. The objects that are
+     * already tracked are discarded. The tracker observes each added object,
+     * so it is notified of its changes.
+     *
+     * @param objects the objects to be added
+     */
+    public void addObjects(O... objects) {
+        for (O currentObject : objects) {
+            if (this.ids.containsKey(currentObject) == true) {
+                continue;
+            }
+
+            /* Give the next identifier to the object */
+            int id = this.objects.size();
+            if (id == this.current.length) {
+                this.current = Arrays.copyOf(this.current, id * 2);
+            }
+            this.ids.put(currentObject, id);
+            this.objects.add(currentObject);
+
+            /* Set its initial state */
+            short state = this.getCurrentState(currentObject);
+            this.current[id] = state;
+            Trajectory<E> objectTrajectory = new Trajectory<>();
+            objectTrajectory.add(this.stateOf(state), this.clock.epochNanos());
+            this.trajectories.add(objectTrajectory);
+            if (state != NO_STATE) {
+                this.members[state].set(id);
+                this.counts[state]++;
+            }
+            currentObject.addObserver(this);
+            this.notifyListeners(currentObject, objectTrajectory);
+        }
+    }
+
+    /**
+     * Stops tracking an object: it is removed with its trajectory, the tracker
+     * stops observing it, and the listeners are told of the removal. Its
+     * identifier is not given to another object.
+     *
+     * @param object the object to remove
+     * @return the trajectory of the object, or null if it was not tracked
+     */
+    public Trajectory<E> removeObject(O object) {
+        Integer id = this.ids.remove(object);
+        if (id == null) {
+            return null;
+        }
+
+        short state = this.current[id];
+        if (state != NO_STATE) {
+            this.members[state].clear(id);
+            this.counts[state]--;
+        }
+        this.current[id] = NO_STATE;
+        this.objects.set(id, null);
+        object.deleteObserver(this);
+        Trajectory<E> objectTrajectory = this.trajectories.set(id, null);
+        long now = this.clock.epochNanos();
+        for (TransitionListener<? super O, E> listener : this.listeners) {
+            listener.removed(object, objectTrajectory, now);
+        }
+        return objectTrajectory;
+    }
+
+    /**
+     * Calls the listeners after a transition.
+     *
+     * @param object the object that has changed
+     * @param objectTrajectory the trajectory of the object
+     */
+    private void notifyListeners(O object, Trajectory<E> objectTrajectory) {
+        for (TransitionListener<? super O, E> listener : this.listeners) {
+            listener.transition(object, objectTrajectory);
+        }
+    }
+
+    /**
+     * Updates the states of all the tracked objects.
+     */
+    public void updateStates() {
+        for (int id = 0; id < this.objects.size(); id++) {
+            this.updateState(id, this.objects.get(id));
+        }
+    }
+
+    /**
+     * Re-evaluates a single object on the values of another one (the object
+     * itself, or a copy of it taken after an earlier change), moving it to
+     * its new state if it has changed.
+     *
+     * @param id the identifier of the object
+     * @param values the object whose values are evaluated
+     */
+    private void updateState(int id, O values) {
+        /* An object without state (or removed) is not checked again */
+        short last = this.current[id];
+        if (last == NO_STATE) {
+            return;
+        }
+
+        /* Nothing to do if the state is the same */
+        O object = this.objects.get(id);
+        short newState = this.getCurrentState(values);
+        if (last == newState) {
+            return;
+        }
+
+        /* Move the object to its new state */
+        this.members[last].clear(id);
+        this.counts[last]--;
+        if (newState != NO_STATE) {
+            this.members[newState].set(id);
+            this.counts[newState]++;
+        }
+        this.current[id] = newState;
+        Trajectory<E> objectTrajectory = this.trajectories.get(id);
+        objectTrajectory.add(this.stateOf(newState), this.clock.epochNanos());
+        this.notifyListeners(object, objectTrajectory);
+    }
+
+    /**
+     * This method is called when an observed object notifies a change. Only
+     * the notifying object is re-evaluated, if it is tracked, on the copy of
+     * its values if the argument is an {@link IntermediateValues}.
+     *
+     * @param object the observed object that triggered the update
+     * @param arg an argument passed by the observed object (optional)
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void update(Observable object, Object arg) {
+        Integer id = this.ids.get(object);
+        if (id != null) {
+            this.updateState(id, (arg instanceof IntermediateValues) ? ((IntermediateValues<O>) arg).getValues() : this.objects.get(id));
+        }
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns the number of objects that are currently in the specified state.
+     *
+     * @param state the state to count
+     * @return the number of objects in the state
+     */
+    public int countIn(E state) {
+        return this.counts[state.ordinal()];
+    }
+
+    /**
+     * Returns the objects that are currently in the specified state, in the
+     * order they were added to the tracker.
+     *
+     * @param state the state to list
+     * @return a new list with the objects in the state
+     */
+    public List<O> objectsIn(E state) {
+        BitSet stateMembers = this.members[state.ordinal()];
+        List<O> result = new ArrayList<>(this.counts[state.ordinal()]);
+
+        for (int id = stateMembers.nextSetBit(0); id >= 0; id = stateMembers.nextSetBit(id + 1)) {
+            result.add(this.objects.get(id));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the current state of the specified object.
+     *
+     * @param o the object to get the state for
+     * @return the current state of the object, or null if it is not tracked
+     */
+    public E stateOf(O o) {
+        Integer id = this.ids.get(o);
+        return (id == null) ? null : this.stateOf(this.current[id]);
+    }
+
+    /**
+     * Gets the trajectory of the specified object.
+     *
+     * @param o the object to get the trajectory for
+     * @return the trajectory of the object, or null if it is not saved
+     */
+    public Trajectory<E> trajectory(O o) {
+        Integer id = this.ids.get(o);
+        return (id == null) ? null : this.trajectories.get(id);
+    }
+
+    /**
+     * Returns an iterator over the objects in this EnumStateTracker, in the
+     * order they were added. The removed objects are skipped.
+     *
+     * @return an iterator over the objects in this EnumStateTracker
+     */
+    @Override
+    public Iterator<O> iterator() {
+        return this.ids.size() == this.objects.size()
+                ? Collections.unmodifiableList(this.objects).iterator()
+                : this.objects.stream().filter(Objects::nonNull).iterator();
+    }
+
+    /**
+     * Returns a string representation of the EnumStateTracker, with the same
+     * format used by {@link ObjectStateTracker}: the objects associated with
+     * each state.
+     *
+     * @return a string representation of the EnumStateTracker
+     */
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder("{");
+
+        for (int ordinal = 0; ordinal < this.states.length; ordinal++) {
+            BitSet stateMembers = this.members[ordinal];
+            boolean flag = false;
+            if (ordinal > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(this.states[ordinal]).append("=[");
+
+            /* The objects of the state, separated by commas */
+            for (int id = stateMembers.nextSetBit(0); id >= 0; id = stateMembers.nextSetBit(id + 1)) {
+                if (flag == false) {
+                    flag = true;
+                } else {
+                    buffer.append(", ");
+                }
+                buffer.append(this.objects.get(id));
+            }
+            buffer.append("]");
+        }
+        return buffer.append("}").toString();
+    }
+}
@@ -0,0 +1,49 @@
+package ObjectStateTracker;
+
+/**
+ * The argument of a notification that is delivered after the object has
+ * changed again: a copy of the values that the object had right after the
+ * change, and the name of the changed property. A tracker evaluates the
+ * state of the notifying object on the copy, so the intermediate state is
+ * recorded in its trajectory even if the object has already left it.
+ *
+ * @param <O> the type of the objects
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+public final class IntermediateValues<O> {
+
+    private final O values;
+    private final String property;
+
+    /**
+     * Constructs the values of an object after a change.
+     *
+     * @param values a copy of the object, not observed by anyone
+     * @param property the name of the changed property, or null if it is
+     * unknown
+     */
+    public IntermediateValues(O values, String property) {
+        this.values = values;
+        this.property = property;
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns the copy of the object after the change.
+     *
+     * @return the copy of the object
+     */
+    public O getValues() {
+        return this.values;
+    }
+
+    /**
+     * Returns the name of the changed property.
+     *
+     * @return the name of the property, or null if it is unknown
+     */
+    public String getProperty() {
+        return this.property;
+    }
+}
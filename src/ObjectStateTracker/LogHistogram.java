@@ -0,0 +1,177 @@
+package ObjectStateTracker;
+
+import java.util.*;
+
+/**
+ * A histogram of non-negative long values (usually durations in nanoseconds)
+ * with a fixed number of logarithmic buckets. Each power of two is split in
+ * 16 buckets of the same width, so a value is kept with a relative error
+ * below 1/16, and the values below 16 are kept exactly. The histogram does
+ * not keep the values, so its memory does not grow with the count, and two
+ * histograms can be merged adding their buckets.
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+public class LogHistogram {
+
+    /* Bits of the value kept after its highest bit, and buckets of each power of two */
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+    private final long[] buckets = new long[BUCKETS];
+    private long count;
+    private long total;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns the bucket of a value.
+     *
+     * @param value the value, not negative
+     * @return the index of the bucket
+     */
+    private static int bucketOf(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    /**
+     * Returns the highest value kept in a bucket.
+     *
+     * @param bucket the index of the bucket
+     * @return the highest value of the bucket
+     */
+    private static long highestOf(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int shift = bucket / SUB_BUCKETS - 1;
+        long lowest = (long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift;
+        return lowest + ((1L << shift) - 1);
+    }
+
+    /**
+     * Adds a value to the histogram. Negative values are taken as 0.
+     *
+     * @param value the value to add
+     */
+    public void record(long value) {
+        value = Math.max(value, 0);
+
+        this.buckets[bucketOf(value)]++;
+        this.count++;
+        this.total += value;
+        this.min = Math.min(this.min, value);
+        this.max = Math.max(this.max, value);
+    }
+
+    /**
+     * Adds the values of another histogram to this one.
+     *
+     * @param other the histogram to add
+     * @return this histogram
+     */
+    public LogHistogram merge(LogHistogram other) {
+        for (int i = 0; i < BUCKETS; i++) {
+            this.buckets[i] += other.buckets[i];
+        }
+        this.count += other.count;
+        this.total += other.total;
+        this.min = Math.min(this.min, other.min);
+        this.max = Math.max(this.max, other.max);
+        return this;
+    }
+
+    /**
+     * Returns a copy of the histogram.
+     *
+     * @return the copy
+     */
+    public LogHistogram copy() {
+        return new LogHistogram().merge(this);
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns the number of values added.
+     *
+     * @return the number of values
+     */
+    public long count() {
+        return this.count;
+    }
+
+    /**
+     * Returns the lowest value added.
+     *
+     * @return the lowest value, or 0 if the histogram is empty
+     */
+    public long min() {
+        return (this.count == 0) ? 0 : this.min;
+    }
+
+    /**
+     * Returns the highest value added.
+     *
+     * @return the highest value, or 0 if the histogram is empty
+     */
+    public long max() {
+        return (this.count == 0) ? 0 : this.max;
+    }
+
+    /**
+     * Returns the mean of the values added.
+     *
+     * @return the mean, or 0 if the histogram is empty
+     */
+    public double mean() {
+        return (this.count == 0) ? 0 : (double) this.total / this.count;
+    }
+
+    /**
+     * Returns the value below which the specified fraction of the values
+     * falls, as the highest value of its bucket (but not above the highest
+     * value added). It takes a time proportional to the number of buckets.
+     *
+     * @param quantile the fraction of the values, between 0 and 1
+     * @return the value of the quantile, or 0 if the histogram is empty
+     * @throws IllegalArgumentException if the fraction is not between 0 and 1
+     */
+    public long valueAt(double quantile) throws IllegalArgumentException {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException();
+        }
+        if (this.count == 0) {
+            return 0;
+        }
+
+        /* The rank of the value, from 1 to count */
+        long rank = Math.max(1, (long) Math.ceil(quantile * this.count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += this.buckets[i];
+            if (seen >= rank) {
+                return Math.min(highestOf(i), this.max);
+            }
+        }
+        return this.max;
+    }
+
+    /**
+     * Returns a string representation of the histogram: the count and some
+     * quantiles of the values.
+     *
+     * @return a string representation of the histogram
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "count=%d, min=%d, p50=%d, p99=%d, max=%d",
+                this.count, this.min(), this.valueAt(0.5), this.valueAt(0.99), this.max());
+    }
+}
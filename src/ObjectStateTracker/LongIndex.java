@@ -0,0 +1,81 @@
+package ObjectStateTracker;
+
+import java.util.Arrays;
+
+/**
+ * A map from long keys to dense int positions (0, 1, 2...), in the order the
+ * keys are added. It uses open addressing over primitive arrays, so no
+ * object is created for each key.
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+class LongIndex {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /* Keys in the order they were added, and table of positions + 1 (0 if the slot is empty) */
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] table = new int[INITIAL_CAPACITY * 2];
+    private int size;
+
+    /**
+     * Returns the slot of the table where a key is, or where it should be.
+     *
+     * @param key the key to search
+     * @return the slot of the key
+     */
+    private int slotOf(long key) {
+        int mask = this.table.length - 1;
+        int slot = Long.hashCode(key * 0x9E3779B97F4A7C15L) & mask;
+
+        while (this.table[slot] != 0 && this.keys[this.table[slot] - 1] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the position of a key, adding it at the end if it is new.
+     *
+     * @param key the key
+     * @return the position of the key
+     */
+    int positionOf(long key) {
+        int slot = this.slotOf(key);
+        if (this.table[slot] != 0) {
+            return this.table[slot] - 1;
+        }
+
+        /* A new key, growing the arrays if they are half full */
+        if (this.size == this.keys.length) {
+            this.keys = Arrays.copyOf(this.keys, this.size * 2);
+            this.table = new int[this.keys.length * 2];
+            for (int i = 0; i < this.size; i++) {
+                this.table[this.slotOf(this.keys[i])] = i + 1;
+            }
+            slot = this.slotOf(key);
+        }
+        this.keys[this.size] = key;
+        this.table[slot] = ++this.size;
+        return this.size - 1;
+    }
+
+    /**
+     * Returns the key at a position.
+     *
+     * @param position the position, lower than the size
+     * @return the key
+     */
+    long keyAt(int position) {
+        return this.keys[position];
+    }
+
+    /**
+     * Returns the number of keys.
+     *
+     * @return the number of keys
+     */
+    int size() {
+        return this.size;
+    }
+}
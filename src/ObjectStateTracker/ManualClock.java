@@ -0,0 +1,60 @@
+package ObjectStateTracker;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A clock that only moves when it is told to, so the timestamps of the
+ * trajectories are deterministic. It is meant for the tests.
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+public class ManualClock implements TrajectoryClock {
+
+    private final AtomicLong now;
+
+    /**
+     * Constructs a clock stopped at the specified instant.
+     *
+     * @param epochNanos the instant, in nanoseconds since the epoch
+     */
+    public ManualClock(long epochNanos) {
+        this.now = new AtomicLong(epochNanos);
+    }
+
+    /**
+     * Constructs a clock stopped at the epoch.
+     */
+    public ManualClock() {
+        this(0);
+    }
+
+    /**
+     * Returns the instant the clock is stopped at.
+     *
+     * @return the instant, in nanoseconds since the epoch
+     */
+    @Override
+    public long epochNanos() {
+        return this.now.get();
+    }
+
+    /**
+     * Moves the clock to the specified instant.
+     *
+     * @param epochNanos the instant, in nanoseconds since the epoch
+     */
+    public void set(long epochNanos) {
+        this.now.set(epochNanos);
+    }
+
+    /**
+     * Moves the clock forward.
+     *
+     * @param duration the time to move
+     * @return the new instant, in nanoseconds since the epoch
+     */
+    public long advance(Duration duration) {
+        return this.now.addAndGet(duration.toNanos());
+    }
+}
@@ -1,7 +1,15 @@
 package ObjectStateTracker;
 
+import java.io.*;
+import java.time.Instant;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.LongFunction;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
 
 /**
  * A class that tracks the state of objects and their trajectories.
@@ -13,20 +21,75 @@ import java.util.function.Predicate;
  */
 public class ObjectStateTracker<O extends Observable, S> implements Iterable<O>, Observer {
 
+    /* Header of the checkpoints: "OSTC" and the version of the format */
+    private static final int CHECKPOINT_MAGIC = 0x4f535443;
+    private static final int CHECKPOINT_VERSION = 2;
+
     /* Object list, with the object and the list of states with his time */
-    private final Map<O, Trajectory<S>> objects = new LinkedHashMap<>();
+    private final Map<O, Trajectory<S>> objects;
+
+    /* Objects that are currently in each state, and the way to create each set */
+    private final Map<S, Set<O>> members;
+    private final Supplier<Set<O>> memberSets;
 
     /* State set, state-lambda map and default state*/
     private final Set<S> states = new TreeSet<>();
     private final Map<S, Predicate<O>> asignedStates = new LinkedHashMap<>();
     private S defaultState;
 
+    /* Properties read by the function of each state, if they are known */
+    private final Map<S, Set<String>> dependencies = new HashMap<>();
+
+    /* Compiled rules, used instead of the state-lambda map if they are set */
+    private StateRules<O, S> rules;
+
+    /* If true, a notification only re-evaluates the object that sent it */
+    private boolean incremental = true;
+
+    /* Listeners of the transitions */
+    private final List<TransitionListener<? super O, S>> listeners = new ArrayList<>();
+
+    /* Observer subscribed to the tracked objects: the tracker itself, or one that forwards to it */
+    private Observer subscriber = this;
+
+    /* Source of the timestamps of the trajectories */
+    private TrajectoryClock clock = TrajectoryClock.MONOTONIC;
+
+    /* Policy that removes objects and caps trajectories, if it is set */
+    private RetentionPolicy<O, S> retention;
+
+    /* Metrics of the tracker, null if they are disabled */
+    private TrackerMetrics<S> metrics;
+
+    /* Transitions in the order of their timestamps, null if they are not indexed */
+    private TransitionIndex<S> transitionIndex;
+
+    /* Pool used to update the states in parallel, and whether the tracker created it */
+    private ForkJoinPool pool = ForkJoinPool.commonPool();
+    private boolean ownsPool;
+
     /**
      * Constructs an ObjectStateTracker with the specified states.
      *
      * @param states the states to be tracked
      */
     public ObjectStateTracker(S... states) {
+        this(new LinkedHashMap<>(), new HashMap<>(), LinkedHashSet::new, states);
+    }
+
+    /**
+     * Constructs an ObjectStateTracker with the specified states, keeping the
+     * objects and the members of each state in the given collections.
+     *
+     * @param objects the map of objects and trajectories to use
+     * @param members the map of states and members to use
+     * @param memberSets the supplier of the set of members of each state
+     * @param states the states to be tracked
+     */
+    protected ObjectStateTracker(Map<O, Trajectory<S>> objects, Map<S, Set<O>> members, Supplier<Set<O>> memberSets, S... states) {
+        this.objects = objects;
+        this.members = members;
+        this.memberSets = memberSets;
         this.states.addAll(Arrays.asList(states));
         this.defaultState = null;
     }
@@ -49,6 +112,26 @@ public class ObjectStateTracker<O extends Observable, S> implements Iterable<O>,
 
         /* Add the state and his action */
         this.asignedStates.put(state, function);
+        this.dependencies.remove(state);
+        return this;
+    }
+
+    /**
+     * Adds a state and its associated function to the ObjectStateTracker,
+     * with the names of the properties of the objects that the function reads.
+     * When an object notifies the change of a property (sending its name as
+     * argument), the functions that do not read it are not checked again.
+     *
+     * @param state the state to be added
+     * @param function the function that determines if an object is in the state
+     * @param properties the names of the properties read by the function
+     * @return the ObjectStateTracker instance
+     * @throws IllegalStateException if the state does not exist in the initial
+     * list of states
+     */
+    public ObjectStateTracker<O, S> withState(S state, Predicate<O> function, String... properties) throws IllegalStateException {
+        this.withState(state, function);
+        this.dependencies.put(state, new HashSet<>(Arrays.asList(properties)));
         return this;
     }
 
@@ -71,6 +154,203 @@ public class ObjectStateTracker<O extends Observable, S> implements Iterable<O>,
         return this;
     }
 
+    /**
+     * Sets compiled rules to decide the state of the objects, instead of the
+     * functions of {@link #withState(Object, Predicate)} and the default state
+     * of {@link #elseState(Object)}. The rules keep the same semantics: the
+     * first rule met gives the state.
+     *
+     * @param rules the rules to be used
+     * @return the ObjectStateTracker instance
+     * @throws IllegalStateException if a state of the rules does not exist in
+     * the initial list of states
+     */
+    public ObjectStateTracker<O, S> withRules(StateRules<O, S> rules) throws IllegalStateException {
+        /* If a state of the rules isn't exist on the started list, throw an error */
+        if (this.states.containsAll(rules.states()) == false) {
+            throw new IllegalStateException();
+        }
+
+        this.rules = rules;
+        return this;
+    }
+
+    /**
+     * Sets how the tracker reacts to the notifications of the observed
+     * objects. In incremental mode (the default) only the object that notified
+     * the change is re-evaluated; otherwise every tracked object is
+     * re-evaluated, as {@link #updateStates()} does.
+     *
+     * @param incremental true to re-evaluate only the notifying object
+     * @return the ObjectStateTracker instance
+     */
+    public ObjectStateTracker<O, S> withIncrementalUpdates(boolean incremental) {
+        this.incremental = incremental;
+        return this;
+    }
+
+    /**
+     * Adds a listener that is called after every transition of the tracked
+     * objects, including the initial state of the new objects. The listeners
+     * must be added before the tracker is shared between threads.
+     *
+     * @param listener the listener to be added
+     * @return the ObjectStateTracker instance
+     */
+    public ObjectStateTracker<O, S> withListener(TransitionListener<? super O, S> listener) {
+        this.listeners.add(listener);
+        return this;
+    }
+
+    /**
+     * Sets the observer that is subscribed to the tracked objects instead of
+     * the tracker itself, such as an {@link AsyncNotifier} that forwards the
+     * notifications to the tracker. The objects already tracked are moved to
+     * the new observer. The tracker keeps a reference to it.
+     *
+     * @param observer the observer subscribed to the tracked objects
+     * @return the ObjectStateTracker instance
+     */
+    public ObjectStateTracker<O, S> withObserver(Observer observer) {
+        for (O currentObject : this.objects.keySet()) {
+            currentObject.deleteObserver(this.subscriber);
+            currentObject.addObserver(observer);
+        }
+        this.subscriber = observer;
+        return this;
+    }
+
+    /**
+     * Sets the clock that gives the timestamps of the transitions. By default
+     * the shared {@link TrajectoryClock#MONOTONIC} clock is used.
+     *
+     * @param clock the clock of the trajectories
+     * @return the ObjectStateTracker instance
+     */
+    public ObjectStateTracker<O, S> withClock(TrajectoryClock clock) {
+        this.clock = clock;
+        return this;
+    }
+
+    /**
+     * Sets the policy that removes the objects and caps the trajectories. The
+     * policy is also added as a listener, to queue the objects that change,
+     * and the tracker sweeps it when it is notified or updated. The
+     * trajectories are capped by the tracker before calling any listener, so
+     * the listeners added before and after the policy see the same
+     * trajectories. The policy reads the time of its sweeps from the clock of
+     * the tracker.
+     *
+     * @param policy the retention policy
+     * @return the ObjectStateTracker instance
+     * @throws IllegalStateException if the policy is already used by another
+     * tracker
+     */
+    public ObjectStateTracker<O, S> withRetention(RetentionPolicy<O, S> policy) throws IllegalStateException {
+        policy.attach(this);
+        this.retention = policy;
+
+        /* The policy may have capped the trajectories already indexed */
+        if (this.transitionIndex != null) {
+            this.transitionIndex = null;
+            this.withTransitionIndex(true);
+        }
+        return this.withListener(policy);
+    }
+
+    /**
+     * Returns the clock that gives the timestamps of the transitions.
+     *
+     * @return the clock of the trajectories
+     */
+    TrajectoryClock clock() {
+        return this.clock;
+    }
+
+    /**
+     * Sets the metrics recorded by the tracker, or disables them with null.
+     * They are disabled by default. The metrics must be set before the
+     * tracker is shared between threads.
+     *
+     * @param metrics the metrics to record, or null
+     * @return the ObjectStateTracker instance
+     */
+    public ObjectStateTracker<O, S> withMetrics(TrackerMetrics<S> metrics) {
+        if (metrics != null) {
+            metrics.attach(this);
+        }
+        this.metrics = metrics;
+        return this;
+    }
+
+    /**
+     * Sets whether the transitions are indexed by their timestamps, so
+     * {@link #countsAt(Instant)} counts the objects of each state at a past
+     * instant without visiting the trajectories, and
+     * {@link #snapshotAt(Instant)} of a recent instant only visits the
+     * transitions since it. When it is enabled the trajectories already tracked are
+     * indexed, and from then on each transition is added to the index. The
+     * transitions of the removed objects and of the visits removed by the
+     * retention policy are retired, so the index is bounded by the visits of
+     * the tracked trajectories, as the trajectories themselves are. It is
+     * disabled by default, and must be set before the tracker is shared
+     * between threads; the trajectories must not be truncated but by the
+     * retention policy while it is enabled.
+     *
+     * @param indexed true to index the transitions
+     * @return the ObjectStateTracker instance
+     */
+    public ObjectStateTracker<O, S> withTransitionIndex(boolean indexed) {
+        if (indexed == false) {
+            this.transitionIndex = null;
+        } else if (this.transitionIndex == null) {
+            this.transitionIndex = new TransitionIndex<>(this.states);
+            this.objects.forEach(this.transitionIndex::addTrajectory);
+        }
+        return this;
+    }
+
+    /**
+     * Sets the number of threads used by {@link #parallelUpdateStates()}. By
+     * default the common pool is used. The tracker creates its own pool, and
+     * shuts down the one it created before, if any.
+     *
+     * @param parallelism the number of threads
+     * @return the ObjectStateTracker instance
+     */
+    public ObjectStateTracker<O, S> withParallelism(int parallelism) {
+        this.setPool(new ForkJoinPool(parallelism), true);
+        return this;
+    }
+
+    /**
+     * Sets the pool used by {@link #parallelUpdateStates()}. The pool belongs
+     * to the caller, so the tracker never shuts it down; the pool the tracker
+     * created before, if any, is shut down.
+     *
+     * @param pool the pool to be used
+     * @return the ObjectStateTracker instance
+     */
+    public ObjectStateTracker<O, S> withParallelism(ForkJoinPool pool) {
+        this.setPool(pool, false);
+        return this;
+    }
+
+    /**
+     * Replaces the pool used to update the states in parallel, shutting down
+     * the previous one if the tracker created it.
+     *
+     * @param pool the new pool
+     * @param owned true if the tracker created the pool
+     */
+    private void setPool(ForkJoinPool pool, boolean owned) {
+        if (this.ownsPool == true) {
+            this.pool.shutdown();
+        }
+        this.pool = pool;
+        this.ownsPool = owned;
+    }
+
     /**
      * Gets the current state of the specified object.
      *
@@ -78,59 +358,562 @@ public class ObjectStateTracker<O extends Observable, S> implements Iterable<O>,
      * @return the current state of the object
      */
     private S getCurrentState(O object) {
-        for (S state : this.asignedStates.keySet()) {
-            if (this.asignedStates.get(state).test(object) == true) {
+        if (this.rules != null) {
+            TrackerMetrics<S> currentMetrics = this.metrics;
+            return (currentMetrics == null) ? this.rules.evaluate(object) : this.rules.evaluate(object, currentMetrics);
+        }
+
+        for (Map.Entry<S, Predicate<O>> assignedState : this.asignedStates.entrySet()) {
+            if (this.metrics != null) {
+                this.metrics.evaluated(assignedState.getKey());
+            }
+            if (assignedState.getValue().test(object) == true) {
+                return assignedState.getKey();
+            }
+        }
+        return this.defaultState;
+    }
+
+    /**
+     * Gets the current state of the specified object after the change of a
+     * property, knowing its previous state. The functions before the previous
+     * state were not met and the one of the previous state was met, so only
+     * the ones that read the changed property need to be checked again.
+     *
+     * @param object the object to get the state for
+     * @param previous the previous state of the object
+     * @param property the name of the changed property, or null if it is
+     * unknown
+     * @return the current state of the object
+     */
+    private S getCurrentState(O object, S previous, String property) {
+        /* Without the property, or if the previous state could have been given by the default state, check everything */
+        if (property == null || this.rules != null || this.asignedStates.containsKey(this.defaultState) == true) {
+            return this.getCurrentState(object);
+        }
+
+        boolean afterPrevious = false;
+        for (Map.Entry<S, Predicate<O>> assignedState : this.asignedStates.entrySet()) {
+            S state = assignedState.getKey();
+            Set<String> read = this.dependencies.get(state);
+            boolean affected = (read == null || read.contains(property) == true);
+
+            /* The functions not affected by the change keep their previous result */
+            if (affected == false && afterPrevious == false) {
+                if (state == previous) {
+                    return state;
+                }
+                continue;
+            }
+
+            if (this.metrics != null) {
+                this.metrics.evaluated(state);
+            }
+            if (assignedState.getValue().test(object) == true) {
                 return state;
             }
+            if (state == previous) {
+                afterPrevious = true;
+            }
         }
         return this.defaultState;
     }
 
     /**
-     * Adds objects to be tracked by the ObjectStateTracker.
+     * Gets the current state of an object, recording the evaluation in the
+     * metrics if they are enabled.
+     *
+     * @param object the object to get the state for
+     * @param previous the previous state of the object, or null if it is new
+     * @param property the name of the changed property, or null if it is
+     * unknown
+     * @return the current state of the object
+     */
+    private S evaluate(O object, S previous, String property) {
+        TrackerMetrics<S> currentMetrics = this.metrics;
+        if (currentMetrics == null) {
+            return (previous == null) ? this.getCurrentState(object) : this.getCurrentState(object, previous, property);
+        }
+
+        long start = System.nanoTime();
+        S state = (previous == null) ? this.getCurrentState(object) : this.getCurrentState(object, previous, property);
+        currentMetrics.reevaluated(System.nanoTime() - start);
+        return state;
+    }
+
+    /**
+     * Moves an object between the member sets of two states. The objects
+     * without state are not kept in any set.
+     *
+     * @param object the object to move
+     * @param from the previous state, or null if the object is new
+     * @param to the new state
+     */
+    private void moveMember(O object, S from, S to) {
+        if (from != null) {
+            this.members.get(from).remove(object);
+        }
+        if (to != null) {
+            this.members.computeIfAbsent(to, state -> this.memberSets.get()).add(object);
+        }
+    }
+
+    /**
+     * Adds objects to be tracked by the ObjectStateTracker. The objects that
+     * are already tracked are discarded. The tracker observes each added
+     * object (see {@link #withObserver(Observer)}), so it is notified of its
+     * changes.
      *
      * @param objects the objects to be added
      */
     public void addObjects(O... objects) {
         /* Adding an entry on the list for each new object, setting an initial state */
         for (O currentObject : objects) {
-            this.objects.put(currentObject, new Trajectory<>(this.getCurrentState(currentObject)));
+            Trajectory<S> objectTrajectory = new Trajectory<>();
+            if (this.objects.putIfAbsent(currentObject, objectTrajectory) != null) {
+                continue;
+            }
+
+            /* The first evaluation sets the initial state */
+            this.updateState(currentObject, objectTrajectory, null);
+            currentObject.addObserver(this.subscriber);
         }
+        this.sweep();
     }
 
     /**
-     * Updates the states of the tracked objects.
+     * Stops tracking an object: it is removed with its trajectory, the tracker
+     * stops observing it, and the listeners are told of the removal.
+     *
+     * @param object the object to remove
+     * @return the trajectory of the object, or null if it was not tracked
      */
-    public void updateStates() {
-        for (O currentObject : this.objects.keySet()) {
-            /* Get the new state */
-            S newState = this.getCurrentState(currentObject);
+    public Trajectory<S> removeObject(O object) {
+        Trajectory<S> objectTrajectory = this.objects.remove(object);
+        if (objectTrajectory != null) {
+            this.moveMember(object, objectTrajectory.last(), null);
+            object.deleteObserver(this.subscriber);
+            long now = this.clock.epochNanos();
+            if (this.transitionIndex != null) {
+                this.transitionIndex.remove(object, objectTrajectory);
+            }
+            for (TransitionListener<? super O, S> listener : this.listeners) {
+                listener.removed(object, objectTrajectory, now);
+            }
+        }
+        return objectTrajectory;
+    }
+
+    /**
+     * Removes the objects whose deadline in the retention policy has passed,
+     * if there is a policy.
+     */
+    private void sweep() {
+        if (this.retention != null) {
+            this.retention.sweep();
+        }
+    }
 
-            /* Get the previous list of states */
-            Trajectory<S> objectTrajectory = this.objects.get(currentObject);
+    /**
+     * Adds the objects of a trajectory log to the tracker, with the
+     * trajectories written in the log. The functions of the states are not
+     * checked and the listeners are not called, so the objects keep the
+     * states and the timestamps of the log. Only the retention policy, if
+     * there is one, is given the objects, scheduled from their last
+     * transition, and the ones whose deadline has passed are removed at the
+     * end. {@link #updateStates()} can be called afterwards if they may have
+     * changed since. The objects whose last record is a removal, the ones
+     * that are already tracked, and the ones that are not found are
+     * discarded. The objects are added in the order of their identifiers if
+     * they are dense, or in the order of their first record otherwise.
+     *
+     * @param log the log to read
+     * @param objects the function that gives the object of each identifier of
+     * the log, or null if it does not exist anymore
+     * @throws IOException if the log can not be read
+     */
+    public void restore(TrajectoryLog<? super O, S> log, LongFunction<? extends O> objects) throws IOException {
+        ReplayedTrajectories<S> restored = new ReplayedTrajectories<>(log);
 
-            /* Check the last state, if it is the same than the new state, continue with the next element */
-            S last = objectTrajectory.last();
-            if (last == null || last == newState) {
+        /* Each object gets its trajectory, and is kept in its last state */
+        for (int position = 0; position < restored.size(); position++) {
+            Trajectory<S> objectTrajectory = restored.trajectoryAt(position);
+            if (objectTrajectory == null) {
                 continue;
             }
+            O currentObject = objects.apply(restored.idAt(position));
+            if (currentObject != null && this.objects.putIfAbsent(currentObject, objectTrajectory) == null) {
+                this.moveMember(currentObject, null, objectTrajectory.last());
+                currentObject.addObserver(this.subscriber);
+                if (this.retention != null) {
+                    this.retention.restored(currentObject, objectTrajectory);
+                }
+                if (this.transitionIndex != null) {
+                    this.transitionIndex.addTrajectory(currentObject, objectTrajectory);
+                }
+            }
+        }
+        this.sweep();
+    }
+
+    /**
+     * Writes a checkpoint of the tracker to the specified output: the names
+     * of the states, the identifier and the trajectory of each object, and
+     * the objects of each state in the order they entered it. The numbers are
+     * written with a variable length and the timestamps as differences with
+     * the previous one, so the checkpoint is compact. Since version 2 each
+     * trajectory is followed by the number of visits removed from it and the
+     * start of the gap they left. The tracker must not be updated while it is
+     * written.
+     *
+     * @param out the output to write to; it is not closed
+     * @param ids the function that gives the identifier of each object
+     * @throws IOException if the output fails
+     */
+    public void checkpoint(OutputStream out, ToLongFunction<? super O> ids) throws IOException {
+        CheckpointOutput data = new CheckpointOutput(out);
+        data.writeUnsigned(CHECKPOINT_MAGIC);
+        data.writeUnsigned(CHECKPOINT_VERSION);
+
+        /* The dictionary of states */
+        Map<S, Integer> stateIndexes = new HashMap<>();
+        data.writeUnsigned(this.states.size());
+        for (S currentState : this.states) {
+            stateIndexes.put(currentState, stateIndexes.size());
+            data.writeString(String.valueOf(currentState));
+        }
+
+        /* The objects and their trajectories, remembering the position of each one */
+        Map<O, Integer> positions = new HashMap<>();
+        data.writeUnsigned(this.objects.size());
+        for (Map.Entry<O, Trajectory<S>> currentEntry : this.objects.entrySet()) {
+            Trajectory<S> objectTrajectory = currentEntry.getValue();
+            long before = 0;
+
+            positions.put(currentEntry.getKey(), positions.size());
+            data.writeLong(ids.applyAsLong(currentEntry.getKey()));
+            data.writeUnsigned(objectTrajectory.size());
+            for (int i = 0; i < objectTrajectory.size(); i++) {
+                S currentState = objectTrajectory.get(i);
+                data.writeUnsigned((currentState == null) ? 0 : stateIndexes.get(currentState) + 1);
+                data.writeSigned(objectTrajectory.epochNanosAt(i) - before);
+                before = objectTrajectory.epochNanosAt(i);
+            }
+            data.writeUnsigned(objectTrajectory.dropped());
+            if (objectTrajectory.dropped() > 0) {
+                data.writeSigned(objectTrajectory.gapStart() - objectTrajectory.epochNanosAt(0));
+            }
+        }
+
+        /* The members of each state, by position */
+        for (S currentState : this.states) {
+            Set<O> stateMembers = this.members.getOrDefault(currentState, Collections.emptySet());
+            data.writeUnsigned(stateMembers.size());
+            for (O currentObject : stateMembers) {
+                data.writeUnsigned(positions.get(currentObject));
+            }
+        }
+        data.flush();
+    }
+
+    /**
+     * Adds the objects of a checkpoint written by
+     * {@link #checkpoint(OutputStream, ToLongFunction)} to the tracker, with
+     * their trajectories and their current states. As with the restore from a
+     * log, the functions of the states are not checked, the listeners but the
+     * retention policy are not called, and the objects that are already
+     * tracked, or that are not found, are discarded.
+     *
+     * @param in the input to read from; it is not closed
+     * @param objects the function that gives the object of each identifier of
+     * the checkpoint, or null if it does not exist anymore
+     * @throws IOException if the input fails or it is not a checkpoint
+     * @throws IllegalStateException if a state of the checkpoint is not in the
+     * tracker
+     */
+    @SuppressWarnings("unchecked")
+    public void restore(InputStream in, LongFunction<? extends O> objects) throws IOException, IllegalStateException {
+        CheckpointInput data = new CheckpointInput(in);
+        if (data.readUnsigned() != CHECKPOINT_MAGIC) {
+            throw new StreamCorruptedException();
+        }
+        long version = data.readUnsigned();
+        if (version < 1 || version > CHECKPOINT_VERSION) {
+            throw new StreamCorruptedException();
+        }
+
+        /* The states of the checkpoint, found by name among the ones of the tracker */
+        Map<String, S> byName = new HashMap<>();
+        for (S currentState : this.states) {
+            byName.put(String.valueOf(currentState), currentState);
+        }
+        Object[] dictionary = new Object[data.readBelow(Integer.MAX_VALUE)];
+        for (int i = 0; i < dictionary.length; i++) {
+            dictionary[i] = byName.get(data.readString());
+            if (dictionary[i] == null) {
+                throw new IllegalStateException();
+            }
+        }
+
+        /* The objects and their trajectories; the discarded ones are kept as null */
+        Object[] restored = new Object[data.readBelow(Integer.MAX_VALUE)];
+        for (int position = 0; position < restored.length; position++) {
+            O currentObject = objects.apply(data.readLong());
+            Trajectory<S> objectTrajectory = new Trajectory<>();
+            long time = 0;
+
+            int visits = data.readBelow(Integer.MAX_VALUE);
+            for (int i = 0; i < visits; i++) {
+                int state = data.readBelow(dictionary.length + 1);
+                time += data.readSigned();
+                objectTrajectory.add((state == 0) ? null : (S) dictionary[state - 1], time);
+            }
+            if (version >= 2) {
+                int dropped = data.readBelow(Integer.MAX_VALUE);
+                if (dropped > 0) {
+                    objectTrajectory.setGap(dropped, objectTrajectory.epochNanosAt(0) + data.readSigned());
+                }
+            }
+            if (currentObject != null && this.objects.putIfAbsent(currentObject, objectTrajectory) == null) {
+                restored[position] = currentObject;
+                currentObject.addObserver(this.subscriber);
+                if (this.retention != null) {
+                    this.retention.restored(currentObject, objectTrajectory);
+                }
+                if (this.transitionIndex != null) {
+                    this.transitionIndex.addTrajectory(currentObject, objectTrajectory);
+                }
+            }
+        }
+
+        /* The members of each state, in the order they entered it */
+        for (Object currentState : dictionary) {
+            int count = data.readBelow(Integer.MAX_VALUE);
+            for (int i = 0; i < count; i++) {
+                Object currentObject = restored[data.readBelow(restored.length)];
+                if (currentObject != null) {
+                    this.moveMember((O) currentObject, null, (S) currentState);
+                }
+            }
+        }
+        this.sweep();
+    }
+
+    /**
+     * Updates the states of all the tracked objects. It works as a full
+     * reconcile, re-evaluating every object even if it has not notified any
+     * change.
+     */
+    public void updateStates() {
+        TrackerMetrics<S> currentMetrics = this.metrics;
+        TrackerEvent event = (currentMetrics == null) ? null : currentMetrics.begin("updateStates");
+
+        for (Map.Entry<O, Trajectory<S>> currentEntry : this.objects.entrySet()) {
+            this.updateState(currentEntry.getKey(), currentEntry.getValue(), null);
+        }
+        this.sweep();
+
+        if (currentMetrics != null) {
+            currentMetrics.end(event);
+        }
+    }
+
+    /**
+     * Updates the states of all the tracked objects, like
+     * {@link #updateStates()}, checking the functions of the objects in
+     * parallel. The new states are then added to the trajectories by the
+     * calling thread in the order of the objects, so the result is the same as
+     * the one of {@link #updateStates()}, and the same metrics and events are
+     * recorded. The functions must be safe to call from several threads.
+     */
+    @SuppressWarnings("unchecked")
+    public void parallelUpdateStates() {
+        TrackerMetrics<S> currentMetrics = this.metrics;
+        TrackerEvent event = (currentMetrics == null) ? null : currentMetrics.begin("parallelUpdateStates");
+        Map.Entry<O, Trajectory<S>>[] entries = (Map.Entry<O, Trajectory<S>>[]) this.objects.entrySet().toArray(new Map.Entry<?, ?>[0]);
+        Object[] newStates = new Object[entries.length];
+
+        /* Get the new states in parallel */
+        int threshold = Math.max(1024, entries.length / (this.pool.getParallelism() * 8));
+        this.pool.invoke(new ParallelEvaluation(entries, newStates, 0, entries.length, threshold));
+
+        /* Add them to the trajectories */
+        for (int i = 0; i < entries.length; i++) {
+            this.applyState(entries[i].getKey(), entries[i].getValue(), (S) newStates[i]);
+        }
+        this.sweep();
+
+        if (currentMetrics != null) {
+            currentMetrics.end(event);
+        }
+    }
+
+    /**
+     * Task that gets the new state of a range of objects, splitting it while
+     * it is bigger than the threshold. It is never serialized.
+     */
+    @SuppressWarnings("serial")
+    private class ParallelEvaluation extends RecursiveAction {
+
+        private final Map.Entry<O, Trajectory<S>>[] entries;
+        private final Object[] newStates;
+        private final int from, to, threshold;
+
+        ParallelEvaluation(Map.Entry<O, Trajectory<S>>[] entries, Object[] newStates, int from, int to, int threshold) {
+            this.entries = entries;
+            this.newStates = newStates;
+            this.from = from;
+            this.to = to;
+            this.threshold = threshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (this.to - this.from <= this.threshold) {
+                for (int i = this.from; i < this.to; i++) {
+                    this.newStates[i] = ObjectStateTracker.this.evaluate(this.entries[i].getKey(), null, null);
+                }
+                return;
+            }
+
+            int middle = (this.from + this.to) >>> 1;
+            invokeAll(new ParallelEvaluation(this.entries, this.newStates, this.from, middle, this.threshold),
+                    new ParallelEvaluation(this.entries, this.newStates, middle, this.to, this.threshold));
+        }
+    }
+
+    /**
+     * Re-evaluates a single object, adding the new state to its trajectory if
+     * it has changed, or the initial state if the trajectory is empty. All the
+     * changes of the trajectory and the members of an object are done here.
+     *
+     * @param object the object to re-evaluate
+     * @param objectTrajectory the trajectory of the object
+     * @param property the name of the changed property, or null if it is
+     * unknown
+     */
+    protected void updateState(O object, Trajectory<S> objectTrajectory, String property) {
+        this.updateState(object, object, objectTrajectory, property);
+    }
 
-            /* If it is a new state, add the state to the object trajectory, adding it to the reference getted */
-            objectTrajectory.add(newState);
-            //this.objects.put(currentObject, objectTrajectory);
+    /**
+     * Re-evaluates a single object on the values of another one, such as a
+     * copy of the object taken right after an earlier change (see
+     * {@link IntermediateValues}), recording the state in the trajectory of
+     * the object.
+     *
+     * @param object the object to re-evaluate
+     * @param values the object whose values are evaluated
+     * @param objectTrajectory the trajectory of the object
+     * @param property the name of the changed property, or null if it is
+     * unknown
+     */
+    protected void updateState(O object, O values, Trajectory<S> objectTrajectory, String property) {
+        /* A new object gets its initial state */
+        if (objectTrajectory.size() == 0) {
+            S initialState = this.evaluate(values, null, null);
+            objectTrajectory.add(initialState, this.clock.epochNanos());
+            this.moveMember(object, null, initialState);
+            this.notifyListeners(object, objectTrajectory);
+            return;
         }
+
+        /* An object without state is not checked again */
+        S last = objectTrajectory.last();
+        if (last == null) {
+            return;
+        }
+        this.applyState(object, objectTrajectory, this.evaluate(values, last, property));
     }
 
     /**
-     * This method is called when an observed object notifies a change. It
-     * updates the states of the object.
+     * Adds a state already evaluated to the trajectory of an object, if it is
+     * a new state.
+     *
+     * @param object the object
+     * @param objectTrajectory the trajectory of the object
+     * @param newState the current state of the object
+     */
+    protected void applyState(O object, Trajectory<S> objectTrajectory, S newState) {
+        /* Check the last state, if it is the same than the new state, there is nothing to do */
+        S last = objectTrajectory.last();
+        if (last == null || last == newState) {
+            return;
+        }
+
+        /* If it is a new state, add the state to the object trajectory */
+        objectTrajectory.add(newState, this.clock.epochNanos());
+        this.moveMember(object, last, newState);
+        this.notifyListeners(object, objectTrajectory);
+    }
+
+    /**
+     * Indexes a transition and calls the listeners, once the trajectory is
+     * capped by the retention policy. The index is told of the visits before
+     * they are removed from the trajectory.
+     *
+     * @param object the object that has changed
+     * @param objectTrajectory the trajectory of the object
+     */
+    private void notifyListeners(O object, Trajectory<S> objectTrajectory) {
+        if (this.transitionIndex != null) {
+            this.transitionIndex.transition(object, objectTrajectory);
+        }
+        if (this.retention != null) {
+            int removed = this.retention.overflow(objectTrajectory);
+            if (removed > 0 && this.transitionIndex != null) {
+                this.transitionIndex.truncate(object, objectTrajectory, removed);
+            }
+            this.retention.cap(objectTrajectory);
+        }
+        if (this.metrics != null) {
+            int size = objectTrajectory.size();
+            this.metrics.transition((size > 1) ? objectTrajectory.get(size - 2) : null, objectTrajectory.get(size - 1));
+        }
+        for (TransitionListener<? super O, S> listener : this.listeners) {
+            listener.transition(object, objectTrajectory);
+        }
+    }
+
+    /**
+     * This method is called when an observed object notifies a change. In
+     * incremental mode only the notifying object is re-evaluated (objects that
+     * are not tracked are ignored); otherwise all the objects are updated. If
+     * the argument is the name of the changed property, only the functions
+     * that read it are checked again. If it is an {@link IntermediateValues},
+     * the notifying object is evaluated on the copy of its values.
      *
      * @param object the observed object that triggered the update
      * @param arg an argument passed by the observed object (optional)
      */
     @Override
+    @SuppressWarnings("unchecked")
     public void update(Observable object, Object arg) {
-        this.updateStates();
+        TrackerMetrics<S> currentMetrics = this.metrics;
+        TrackerEvent event = null;
+        if (currentMetrics != null) {
+            currentMetrics.notified();
+            event = currentMetrics.begin("update");
+        }
+
+        if (this.incremental == false) {
+            this.updateStates();
+        } else {
+            this.sweep();
+
+            /* Only the object that has changed needs to be checked */
+            Trajectory<S> objectTrajectory = this.objects.get(object);
+            if (objectTrajectory != null && arg instanceof IntermediateValues) {
+                IntermediateValues<O> change = (IntermediateValues<O>) arg;
+                this.updateState((O) object, change.getValues(), objectTrajectory, change.getProperty());
+            } else if (objectTrajectory != null) {
+                this.updateState((O) object, objectTrajectory, (arg instanceof String) ? (String) arg : null);
+            }
+        }
+
+        if (currentMetrics != null) {
+            currentMetrics.end(event);
+        }
     }
 
     /*____________________________________________________________________*/
@@ -145,53 +928,58 @@ public class ObjectStateTracker<O extends Observable, S> implements Iterable<O>,
     }
 
     /**
-     * Returns a string representation of the ObjectStateTracker. The string
-     * representation contains the information of each state and the objects
-     * associated with each state.
+     * Writes the representation of the ObjectStateTracker to the specified
+     * output, in a single pass over the objects of each state. The objects of a
+     * state are written in the order they entered it.
      *
-     * @return a string representation of the ObjectStateTracker
+     * @param out the output to write to
+     * @throws IOException if the output fails
      */
-    @Override
-    public String toString() {
+    public void print(Appendable out) throws IOException {
         int stateCount = this.states.size();
-        String buffer;
-        boolean flag;
 
-        buffer = "{";
+        out.append('{');
         /* Print the info of each state */
         for (S savingState : this.states) {
-            flag = false;
-            buffer += savingState + "=[";
-
-            /* Iterate the users list */
-            for (Map.Entry<O, Trajectory<S>> currentEntry : this.objects.entrySet()) {
-                O currentObject = currentEntry.getKey();
-                Trajectory<S> currentTrajectory = currentEntry.getValue();
-
-                /* If the last state it is the same that the one that is being printing, it is saved */
-                S lastState = currentTrajectory.last();
-                if (lastState == savingState) {
-                    /* If there has been an element before, a comma is put */
-                    if (flag == false) {
-                        flag = true;
-                    } else {
-                        buffer += ", ";
-                    }
-
-                    /* The object is added to the string */
-                    buffer += currentObject;
+            boolean flag = false;
+            out.append(String.valueOf(savingState)).append("=[");
+
+            /* The objects of the state, separated by commas */
+            for (O currentObject : this.objectsIn(savingState)) {
+                if (flag == false) {
+                    flag = true;
+                } else {
+                    out.append(", ");
                 }
+                out.append(String.valueOf(currentObject));
             }
-            buffer += "]";
+            out.append(']');
 
             /* If there is another element after, a comma is added */
             stateCount--;
             if (stateCount > 0) {
-                buffer += ", ";
+                out.append(", ");
             }
         }
-        buffer += "}";
-        return buffer;
+        out.append('}');
+    }
+
+    /**
+     * Returns a string representation of the ObjectStateTracker. The string
+     * representation contains the information of each state and the objects
+     * associated with each state.
+     *
+     * @return a string representation of the ObjectStateTracker
+     */
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        try {
+            this.print(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toString();
     }
 
     /**
@@ -201,17 +989,142 @@ public class ObjectStateTracker<O extends Observable, S> implements Iterable<O>,
      * @return the trajectory of the object, or null if it is not saved
      */
     public Trajectory<S> trajectory(O o) {
-        Map.Entry<O, Trajectory<S>> searchEntry = null;
+        return this.objects.get(o);
+    }
+
+    /**
+     * Returns the number of objects that are currently in the specified state.
+     *
+     * @param state the state to count
+     * @return the number of objects in the state
+     */
+    public int countIn(S state) {
+        Set<O> stateMembers = this.members.get(state);
+        return (stateMembers == null) ? 0 : stateMembers.size();
+    }
+
+    /**
+     * Returns the objects that are currently in the specified state, in the
+     * order they entered it. The set is an unmodifiable live view.
+     *
+     * @param state the state to list
+     * @return the objects in the state
+     */
+    public Set<O> objectsIn(S state) {
+        Set<O> stateMembers = this.members.get(state);
+        return (stateMembers == null) ? Collections.emptySet() : Collections.unmodifiableSet(stateMembers);
+    }
+
+    /**
+     * Returns the current state of the specified object.
+     *
+     * @param o the object to get the state for
+     * @return the current state of the object, or null if it is not tracked
+     */
+    public S stateOf(O o) {
+        Trajectory<S> objectTrajectory = this.objects.get(o);
+        return (objectTrajectory == null) ? null : objectTrajectory.last();
+    }
+
+    /**
+     * Returns the objects of each state at a past instant: the state of each
+     * object is the one of the last visit of its trajectory made at or before
+     * the instant. With the transition index (see
+     * {@link #withTransitionIndex(boolean)}), if there have been fewer
+     * transitions since the instant than objects, the snapshot starts from
+     * the current states and undoes the indexed transitions since the
+     * instant; otherwise every trajectory is searched. Either way the
+     * snapshot is built when it is taken, so later changes of the tracker do
+     * not change it. Only the objects tracked when the snapshot is taken are seen, as in
+     * {@link #countsAt(Instant)}: the objects removed after the instant are
+     * not in it.
+     *
+     * @param instant the instant of the snapshot
+     * @return the snapshot of the states at the instant
+     */
+    public StateSnapshot<O, S> snapshotAt(Instant instant) {
+        long epochNanos = TrajectoryClock.toEpochNanos(instant);
+        TransitionIndex<S> index = this.transitionIndex;
+        Map<S, Set<O>> indexed = (index != null) ? index.membersAt(this.objects, epochNanos) : null;
+        if (indexed != null) {
+            return new StateSnapshot<>(instant, indexed);
+        }
+
+        Map<S, Set<O>> result = new LinkedHashMap<>();
+        for (S currentState : this.states) {
+            result.put(currentState, new LinkedHashSet<>());
+        }
 
-        /* Search the entry of the specified object */
         for (Map.Entry<O, Trajectory<S>> currentEntry : this.objects.entrySet()) {
-            if (currentEntry.getKey().equals(o)) {
-                searchEntry = currentEntry;
-                break;
+            S currentState = stateAt(currentEntry.getValue(), epochNanos);
+            if (currentState != null) {
+                result.computeIfAbsent(currentState, state -> new LinkedHashSet<>()).add(currentEntry.getKey());
             }
         }
+        return new StateSnapshot<>(instant, result);
+    }
 
-        /* Returning the trajectory of the object, or null if it is not saved */
-        return (searchEntry == null) ? null : searchEntry.getValue();
+    /**
+     * Returns the number of objects of each state at a past instant. With the
+     * transition index (see {@link #withTransitionIndex(boolean)}) the counts
+     * are read from the index, without visiting the trajectories; otherwise
+     * every trajectory is searched. Either way only the objects tracked now
+     * are counted, so the counts are the ones of
+     * {@link #snapshotAt(Instant)}.
+     *
+     * @param instant the instant to count
+     * @return the count of each state, in the order of the states
+     */
+    public Map<S, Integer> countsAt(Instant instant) {
+        long epochNanos = TrajectoryClock.toEpochNanos(instant);
+        TransitionIndex<S> index = this.transitionIndex;
+        if (index != null) {
+            return Collections.unmodifiableMap(index.countsAt(epochNanos));
+        }
+
+        Map<S, Integer> result = new LinkedHashMap<>();
+        for (S currentState : this.states) {
+            result.put(currentState, 0);
+        }
+        for (Trajectory<S> objectTrajectory : this.objects.values()) {
+            S currentState = stateAt(objectTrajectory, epochNanos);
+            if (currentState != null) {
+                result.merge(currentState, 1, Integer::sum);
+            }
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * Returns the state of a trajectory at an instant, with a binary search.
+     *
+     * @param objectTrajectory the trajectory
+     * @param epochNanos the instant, in nanoseconds since the epoch
+     * @return the state at the instant, or null if it had none or it is in
+     * the visits removed from the trajectory
+     */
+    private static <S> S stateAt(Trajectory<S> objectTrajectory, long epochNanos) {
+        int visit = objectTrajectory.indexAt(epochNanos);
+        return (visit < 0 || objectTrajectory.inGap(epochNanos) == true) ? null : objectTrajectory.get(visit);
+    }
+
+    /**
+     * Returns the metrics recorded by the tracker.
+     *
+     * @return the metrics, or null if they are disabled
+     */
+    public TrackerMetrics<S> metrics() {
+        return this.metrics;
+    }
+
+    /**
+     * Returns a sequential stream over the tracked objects and their
+     * trajectories, so all of them can be visited in a single pass without
+     * searching each object. The entries can not be modified.
+     *
+     * @return a stream of the pairs of object and trajectory
+     */
+    public Stream<Map.Entry<O, Trajectory<S>>> trajectories() {
+        return Collections.unmodifiableMap(this.objects).entrySet().stream();
     }
 }
@@ -0,0 +1,150 @@
+package ObjectStateTracker;
+
+import java.util.Arrays;
+
+/**
+ * The trajectories read from a trajectory log, by object identifier. The log
+ * is read twice: the first pass only finds the range of the identifiers, and
+ * if they are dense (as the identifiers given by a database usually are)
+ * each identifier minus the lowest one is its position, so the second pass
+ * builds the trajectories in an array of the exact size without hashing the
+ * identifiers. Otherwise the positions are given by a {@link LongIndex}.
+ *
+ * @param <S> the type of the states
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+class ReplayedTrajectories<S> implements TrajectoryLog.Visitor<S> {
+
+    /* Maximum number of unused positions per record to index the identifiers directly */
+    private static final int MAX_GAP = 2;
+
+    /* Lowest identifier and positions when they are dense, or the index of the identifiers */
+    private final long lowest;
+    private final LongIndex ids;
+
+    /* Trajectory of each position, null if the object has no records or was removed */
+    private Trajectory<?>[] trajectories;
+    private int size;
+
+    /**
+     * Reads the trajectories of a log.
+     *
+     * @param log the log to read
+     * @throws java.io.IOException if the log can not be read
+     */
+    ReplayedTrajectories(TrajectoryLog<?, S> log) throws java.io.IOException {
+        long[] range = {Long.MAX_VALUE, Long.MIN_VALUE, 0};
+        log.replay(new TrajectoryLog.Visitor<S>() {
+            @Override
+            public void visit(long id, S state, long epochNanos) {
+                this.removed(id, epochNanos);
+            }
+
+            @Override
+            public void removed(long id, long epochNanos) {
+                range[0] = Math.min(range[0], id);
+                range[1] = Math.max(range[1], id);
+                range[2]++;
+            }
+        });
+
+        /* The difference is negative if it overflows */
+        long span = range[1] - range[0] + 1;
+        if (range[2] > 0 && span > 0 && span <= Math.min(range[2] * MAX_GAP + 16, Integer.MAX_VALUE - 8)) {
+            this.lowest = range[0];
+            this.ids = null;
+            this.size = (int) span;
+        } else {
+            this.lowest = 0;
+            this.ids = new LongIndex();
+        }
+        this.trajectories = new Trajectory<?>[Math.max(this.size, 16)];
+        log.replay(this);
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns the position of an identifier, growing the array of
+     * trajectories if it is new.
+     *
+     * @param id the identifier
+     * @return the position of the identifier
+     */
+    private int positionOf(long id) {
+        if (this.ids == null) {
+            return (int) (id - this.lowest);
+        }
+
+        int position = this.ids.positionOf(id);
+        if (position == this.size) {
+            if (this.size == this.trajectories.length) {
+                this.trajectories = Arrays.copyOf(this.trajectories, this.size * 2);
+            }
+            this.size++;
+        }
+        return position;
+    }
+
+    /**
+     * Adds a visit to the trajectory of an object, starting a new trajectory
+     * if it had none or it was removed.
+     *
+     * @param id the identifier of the object
+     * @param state the state of the object, or null
+     * @param epochNanos the timestamp of the transition
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void visit(long id, S state, long epochNanos) {
+        int position = this.positionOf(id);
+        Trajectory<S> trajectory = (Trajectory<S>) this.trajectories[position];
+        if (trajectory == null) {
+            trajectory = new Trajectory<>();
+            this.trajectories[position] = trajectory;
+        }
+        trajectory.add(state, epochNanos);
+    }
+
+    /**
+     * Drops the trajectory of a removed object.
+     *
+     * @param id the identifier of the object
+     * @param epochNanos the timestamp of the removal
+     */
+    @Override
+    public void removed(long id, long epochNanos) {
+        this.trajectories[this.positionOf(id)] = null;
+    }
+
+    /**
+     * Returns the number of positions, some of them maybe without trajectory.
+     *
+     * @return the number of positions
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the identifier of a position.
+     *
+     * @param position the position, lower than the size
+     * @return the identifier
+     */
+    long idAt(int position) {
+        return (this.ids == null) ? this.lowest + position : this.ids.keyAt(position);
+    }
+
+    /**
+     * Returns the trajectory of a position.
+     *
+     * @param position the position, lower than the size
+     * @return the trajectory, or null if the object was removed or has no
+     * records
+     */
+    @SuppressWarnings("unchecked")
+    Trajectory<S> trajectoryAt(int position) {
+        return (Trajectory<S>) this.trajectories[position];
+    }
+}
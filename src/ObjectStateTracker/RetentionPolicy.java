@@ -0,0 +1,358 @@
+package ObjectStateTracker;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Rules to remove objects from a tracker and to keep their trajectories
+ * short: objects can be removed some time after they enter a terminal state,
+ * or some time after their last transition, and trajectories can be capped
+ * to a number of visits. The removed objects can be given to an archive
+ * before, such as a process that keeps their statistics.
+ *
+ * The policy does not search the objects to remove. Each transition puts the
+ * object at the end of a queue with its deadline, and the tracker sweeps the
+ * queues lazily when it is notified or updated, removing the objects at the
+ * head whose deadline has passed; the entries of the objects that have
+ * changed since they were queued are just discarded. Since all the entries of
+ * a queue have the same delay, they are queued in the order of their
+ * deadlines, so each transition costs a constant time. The queues are
+ * concurrent, so the transitions of different threads queue their objects
+ * without locking; only one thread sweeps at a time, and the others skip the
+ * sweep while it runs. The earliest deadline is kept apart and read without
+ * locking, so a sweep before it only reads the clock.
+ *
+ * The trajectories are capped by the tracker itself, right after each
+ * transition and before any listener is called, so every listener sees the
+ * capped trajectory whatever the order they were added in.
+ *
+ * @param <O> the type of the objects of the tracker
+ * @param <S> the type of the states
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+public class RetentionPolicy<O extends Observable, S> implements TransitionListener<O, S> {
+
+    /* Terminal states and the delay before removing the objects in them (-1 if not set) */
+    private final Set<S> terminalStates = new HashSet<>();
+    private long terminalDelay = -1;
+
+    /* Delay after the last transition before removing an object (-1 if not set) */
+    private long expiry = -1;
+
+    /* Maximum number of visits of a trajectory (0 if not set) */
+    private int maxLength;
+
+    /* Receiver of the removed objects */
+    private BiConsumer<? super O, Trajectory<S>> archive;
+
+    /* Tracker the objects are removed from, whose clock gives the time of the sweeps */
+    private ObjectStateTracker<O, S> tracker;
+
+    /* Queued objects, in the order of their deadlines */
+    private final Queue<Deadline> terminalQueue = new ConcurrentLinkedQueue<>();
+    private final Queue<Deadline> expiryQueue = new ConcurrentLinkedQueue<>();
+
+    /* Earliest deadline at the head of the queues, or Long.MAX_VALUE if they are empty */
+    private final AtomicLong nextDeadline = new AtomicLong(Long.MAX_VALUE);
+
+    /* Held by the thread that sweeps the queues */
+    private final ReentrantLock sweeping = new ReentrantLock();
+
+    /**
+     * An object queued to be removed, with the number of visits of its
+     * trajectory when it was queued.
+     */
+    private class Deadline {
+
+        private final O object;
+        private final Trajectory<S> trajectory;
+        private final long visits;
+        private final long time;
+
+        Deadline(O object, Trajectory<S> trajectory, long time) {
+            this.object = object;
+            this.trajectory = trajectory;
+            this.visits = visitsOf(trajectory);
+            this.time = time;
+        }
+    }
+
+    /**
+     * Constructs a policy without rules. The time of the sweeps is read from
+     * the clock of the tracker it is set to, so the deadlines are compared
+     * with the timestamps of the same clock.
+     */
+    public RetentionPolicy() {
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Removes the objects some time after they enter one of the specified
+     * states, if they are still in it.
+     *
+     * @param delay the time in the terminal state before being removed
+     * @param states the terminal states
+     * @return the RetentionPolicy instance
+     */
+    @SafeVarargs
+    public final RetentionPolicy<O, S> evictAfter(Duration delay, S... states) {
+        this.terminalDelay = delay.toNanos();
+        this.terminalStates.addAll(Arrays.asList(states));
+        return this;
+    }
+
+    /**
+     * Removes the objects some time after their last transition, whatever
+     * their state is.
+     *
+     * @param ttl the time without transitions before being removed
+     * @return the RetentionPolicy instance
+     */
+    public RetentionPolicy<O, S> expireAfter(Duration ttl) {
+        this.expiry = ttl.toNanos();
+        return this;
+    }
+
+    /**
+     * Caps the number of visits of the trajectories. When a trajectory grows
+     * longer, its oldest visits but the first one are removed (see
+     * {@link Trajectory#truncate(int)}), so the initial state and the last
+     * transition are always kept.
+     *
+     * @param maxLength the maximum number of visits, at least 3
+     * @return the RetentionPolicy instance
+     * @throws IllegalArgumentException if the number is lower than 3
+     */
+    public RetentionPolicy<O, S> maxTrajectoryLength(int maxLength) throws IllegalArgumentException {
+        if (maxLength < 3) {
+            throw new IllegalArgumentException();
+        }
+        this.maxLength = maxLength;
+        return this;
+    }
+
+    /**
+     * Sets the receiver of the objects removed, called with each object and
+     * its trajectory before it is removed.
+     *
+     * @param archive the receiver of the removed objects
+     * @return the RetentionPolicy instance
+     */
+    public RetentionPolicy<O, S> withArchive(BiConsumer<? super O, Trajectory<S>> archive) {
+        this.archive = archive;
+        return this;
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns the number of visits ever added to a trajectory, which only
+     * changes when there is a transition.
+     *
+     * @param trajectory the trajectory
+     * @return the number of visits
+     */
+    private static long visitsOf(Trajectory<?> trajectory) {
+        return (long) trajectory.size() + trajectory.dropped();
+    }
+
+    /**
+     * Sets the tracker of the policy, and queues the objects it already
+     * tracks, capping their trajectories. It is called by
+     * {@link ObjectStateTracker#withRetention(RetentionPolicy)}.
+     *
+     * @param tracker the tracker the objects are removed from
+     * @throws IllegalStateException if the policy already has a tracker
+     */
+    synchronized void attach(ObjectStateTracker<O, S> tracker) throws IllegalStateException {
+        if (this.tracker != null) {
+            throw new IllegalStateException();
+        }
+
+        this.tracker = tracker;
+        tracker.trajectories().forEach(entry -> this.restored(entry.getKey(), entry.getValue()));
+    }
+
+    /**
+     * Returns the number of visits that {@link #cap(Trajectory)} would remove
+     * from a trajectory.
+     *
+     * @param trajectory the trajectory
+     * @return the number of visits over the maximum, or 0
+     */
+    int overflow(Trajectory<S> trajectory) {
+        return (this.maxLength > 0) ? Math.max(0, trajectory.size() - this.maxLength) : 0;
+    }
+
+    /**
+     * Caps a trajectory to the maximum number of visits, if it is set. The
+     * tracker calls it after each transition, before calling the listeners.
+     *
+     * @param trajectory the trajectory to cap
+     */
+    void cap(Trajectory<S> trajectory) {
+        if (this.maxLength > 0) {
+            trajectory.truncate(this.maxLength);
+        }
+    }
+
+    /**
+     * Queues an object after a transition.
+     *
+     * @param object the object that has changed
+     * @param trajectory the trajectory of the object
+     */
+    private void schedule(O object, Trajectory<S> trajectory) {
+        if (trajectory.size() == 0) {
+            return;
+        }
+
+        long time = trajectory.epochNanosAt(trajectory.size() - 1);
+        if (this.terminalDelay >= 0 && this.terminalStates.contains(trajectory.last()) == true) {
+            this.enqueue(this.terminalQueue, new Deadline(object, trajectory, time + this.terminalDelay));
+        }
+        if (this.expiry >= 0) {
+            this.enqueue(this.expiryQueue, new Deadline(object, trajectory, time + this.expiry));
+        }
+    }
+
+    /**
+     * Adds an entry at the end of a queue, and lowers the earliest deadline
+     * to its time if it is earlier. It is lowered after the entry is queued,
+     * so a sweep that has not seen the entry does not hide its deadline.
+     *
+     * @param queue the queue of the entry
+     * @param deadline the entry to queue
+     */
+    private void enqueue(Queue<Deadline> queue, Deadline deadline) {
+        queue.offer(deadline);
+        this.nextDeadline.accumulateAndGet(deadline.time, Math::min);
+    }
+
+    /**
+     * Sets the earliest deadline from the heads of the queues. It is called
+     * by the thread that sweeps, and lowered concurrently by the transitions.
+     */
+    private void updateNextDeadline() {
+        this.nextDeadline.set(Long.MAX_VALUE);
+        Deadline head = this.terminalQueue.peek();
+        if (head != null) {
+            this.nextDeadline.accumulateAndGet(head.time, Math::min);
+        }
+        head = this.expiryQueue.peek();
+        if (head != null) {
+            this.nextDeadline.accumulateAndGet(head.time, Math::min);
+        }
+    }
+
+    /**
+     * Queues an object restored by the tracker from a log or a checkpoint,
+     * which does not call the listeners, and caps its trajectory. Its deadline
+     * counts from its last transition, so it may have passed already.
+     *
+     * @param object the restored object
+     * @param trajectory the restored trajectory of the object
+     */
+    void restored(O object, Trajectory<S> trajectory) {
+        this.cap(trajectory);
+        this.schedule(object, trajectory);
+    }
+
+    /**
+     * Queues the object that has changed, whose trajectory has already been
+     * capped by the tracker. The objects are not removed here, since the
+     * tracker may be going over them.
+     *
+     * @param object the object that has changed
+     * @param trajectory the trajectory of the object, ending in the new state
+     */
+    @Override
+    public void transition(O object, Trajectory<S> trajectory) {
+        this.schedule(object, trajectory);
+    }
+
+    /**
+     * Removes the objects of a queue whose deadline has passed.
+     *
+     * @param queue the queue to sweep
+     * @param now the current time
+     * @param removed the objects removed, with their trajectories, or null
+     * @return the objects removed, or null if there are none
+     */
+    private List<Deadline> sweep(Queue<Deadline> queue, long now, List<Deadline> removed) {
+        for (Deadline head = queue.peek(); head != null && head.time <= now; head = queue.peek()) {
+            queue.poll();
+
+            /* The object may have changed, or may have been removed, since it was queued */
+            if (visitsOf(head.trajectory) == head.visits && this.tracker.trajectory(head.object) == head.trajectory) {
+                if (removed == null) {
+                    removed = new ArrayList<>();
+                }
+                removed.add(head);
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Removes from the tracker the objects whose deadline has passed, giving
+     * them to the archive first. It takes a time proportional to the number of
+     * entries whose deadline has passed, so it can be called often; the
+     * tracker calls it when it is notified or updated. Before the earliest
+     * deadline it does not lock the policy, and while another thread is
+     * sweeping it returns at once.
+     *
+     * @return the number of objects removed
+     */
+    public int sweep() {
+        /* A deadline is only queued once the policy has a tracker */
+        long next = this.nextDeadline.get();
+        if (next == Long.MAX_VALUE || this.tracker.clock().epochNanos() < next) {
+            return 0;
+        }
+        if (this.sweeping.tryLock() == false) {
+            return 0;
+        }
+
+        List<Deadline> removed;
+        try {
+            long now = this.tracker.clock().epochNanos();
+            removed = this.sweep(this.terminalQueue, now, null);
+            removed = this.sweep(this.expiryQueue, now, removed);
+            this.updateNextDeadline();
+        } finally {
+            this.sweeping.unlock();
+        }
+        if (removed == null) {
+            return 0;
+        }
+
+        /* The objects are removed out of the lock, in case the archive is slow */
+        int count = 0;
+        for (Deadline current : removed) {
+            if (this.tracker.trajectory(current.object) == current.trajectory) {
+                if (this.archive != null) {
+                    this.archive.accept(current.object, current.trajectory);
+                }
+                this.tracker.removeObject(current.object);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of entries queued, including the ones of objects that
+     * have changed since and will be discarded. It goes over the queues, so it
+     * is meant for tests and monitoring.
+     *
+     * @return the number of entries queued
+     */
+    public int pending() {
+        return this.terminalQueue.size() + this.expiryQueue.size();
+    }
+}
@@ -0,0 +1,366 @@
+package ObjectStateTracker;
+
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * A set of state rules declared over named conditions of the objects, that
+ * is compiled into a decision tree. Each rule gives a state and the
+ * conditions (maybe negated with a leading '!') that an object must meet to
+ * be in it. The rules keep the semantics of the predicates of a tracker: the
+ * first rule met, in the order they were added, gives the state, or the
+ * default state if none is met. The decision tree reads each condition at
+ * most once per evaluation, and it does not read the conditions of the
+ * rules that can not be met anymore. The tree is built on the first
+ * evaluation and kept until a rule or the default state changes; the
+ * subtrees reached with the same known conditions are shared.
+ *
+ * The conditions are opaque functions, not extractors of the properties of
+ * the objects: the tree reads each condition at most once, but two
+ * conditions that read the same property (such as the amount paid for
+ * "fullyPayed" and "notPayed") read it once each.
+ *
+ * @param <O> the type of the objects being evaluated
+ * @param <S> the type of the states
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+public class StateRules<O, S> {
+
+    /* Conditions, with their names */
+    private final List<String> names = new ArrayList<>();
+    private final List<Predicate<O>> conditions = new ArrayList<>();
+
+    /* Rules: state and literals (condition index + 1, negative if it is negated) */
+    private final List<S> ruleStates = new ArrayList<>();
+    private final List<int[]> ruleLiterals = new ArrayList<>();
+    private S defaultState;
+
+    /* Decision tree, null until it is built or after the rules change */
+    private volatile Tree<O> tree;
+
+    /**
+     * A built decision tree: the condition of each node (-1 on leaves), its
+     * children, and the states and rules of the leaves (the number of rules
+     * for the default state). It is not modified once built.
+     */
+    private static final class Tree<O> {
+        private final Predicate<O>[] conditions;
+        private final int[] nodeCondition;
+        private final int[] nodeTrue;
+        private final int[] nodeFalse;
+        private final Object[] nodeState;
+        private final int[] nodeRule;
+
+        private Tree(Predicate<O>[] conditions, int[] nodeCondition, int[] nodeTrue, int[] nodeFalse, Object[] nodeState, int[] nodeRule) {
+            this.conditions = conditions;
+            this.nodeCondition = nodeCondition;
+            this.nodeTrue = nodeTrue;
+            this.nodeFalse = nodeFalse;
+            this.nodeState = nodeState;
+            this.nodeRule = nodeRule;
+        }
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Adds a named condition of the objects. It does not change the decision
+     * tree until a rule uses it.
+     *
+     * @param name the name of the condition
+     * @param condition the function that checks the condition
+     * @return the StateRules instance
+     * @throws IllegalStateException if there is already a condition with the
+     * same name
+     */
+    public StateRules<O, S> condition(String name, Predicate<O> condition) throws IllegalStateException {
+        if (this.names.contains(name) == true) {
+            throw new IllegalStateException();
+        }
+
+        this.names.add(name);
+        this.conditions.add(condition);
+        return this;
+    }
+
+    /**
+     * Adds a rule, checked after the ones added before.
+     *
+     * @param state the state of the rule
+     * @param literals the names of the conditions that must be met, with a
+     * leading '!' if the condition must not be met
+     * @return the StateRules instance
+     * @throws IllegalStateException if a condition does not exist
+     */
+    public StateRules<O, S> rule(S state, String... literals) throws IllegalStateException {
+        int[] encoded = new int[literals.length];
+
+        /* Each literal is kept as index + 1, negative if it is negated */
+        for (int i = 0; i < literals.length; i++) {
+            boolean negated = literals[i].startsWith("!");
+            int index = this.names.indexOf(negated ? literals[i].substring(1) : literals[i]);
+            if (index < 0) {
+                throw new IllegalStateException();
+            }
+            encoded[i] = negated ? -(index + 1) : index + 1;
+        }
+
+        this.ruleStates.add(state);
+        this.ruleLiterals.add(encoded);
+        this.tree = null;
+        return this;
+    }
+
+    /**
+     * Sets the state of the objects that do not meet any rule.
+     *
+     * @param state the default state
+     * @return the StateRules instance
+     */
+    public StateRules<O, S> elseState(S state) {
+        if (Objects.equals(this.defaultState, state) == false) {
+            this.defaultState = state;
+            this.tree = null;
+        }
+        return this;
+    }
+
+    /**
+     * Returns the states given by the rules, including the default one.
+     *
+     * @return the states of the rules
+     */
+    public Set<S> states() {
+        Set<S> states = new LinkedHashSet<>(this.ruleStates);
+        if (this.defaultState != null) {
+            states.add(this.defaultState);
+        }
+        return states;
+    }
+
+    /**
+     * Returns the function of a condition.
+     *
+     * @param name the name of the condition
+     * @return the function that checks the condition, or null if there is no
+     * condition with that name
+     */
+    public Predicate<O> getCondition(String name) {
+        int index = this.names.indexOf(name);
+        return (index < 0) ? null : this.conditions.get(index);
+    }
+
+    /**
+     * Returns the number of rules, without the default state.
+     *
+     * @return the number of rules
+     */
+    public int getRuleCount() {
+        return this.ruleStates.size();
+    }
+
+    /**
+     * Returns the state of a rule.
+     *
+     * @param rule the position of the rule, in the order they were added
+     * @return the state of the rule
+     * @throws IndexOutOfBoundsException if there is no such rule
+     */
+    public S getRuleState(int rule) throws IndexOutOfBoundsException {
+        return this.ruleStates.get(rule);
+    }
+
+    /**
+     * Returns the conditions of a rule, as they were given to
+     * {@link #rule(Object, String...)}.
+     *
+     * @param rule the position of the rule, in the order they were added
+     * @return the names of the conditions, with a leading '!' if the
+     * condition must not be met
+     * @throws IndexOutOfBoundsException if there is no such rule
+     */
+    public String[] getRuleLiterals(int rule) throws IndexOutOfBoundsException {
+        int[] encoded = this.ruleLiterals.get(rule);
+        String[] literals = new String[encoded.length];
+
+        for (int i = 0; i < encoded.length; i++) {
+            String name = this.names.get(Math.abs(encoded[i]) - 1);
+            literals[i] = (encoded[i] < 0) ? "!" + name : name;
+        }
+        return literals;
+    }
+
+    /**
+     * Returns the state of the objects that do not meet any rule.
+     *
+     * @return the default state, or null if it is not set
+     */
+    public S getDefaultState() {
+        return this.defaultState;
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Compiles the rules into the decision tree, if they have changed since
+     * it was built.
+     *
+     * @return the decision tree
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized Tree<O> compile() {
+        if (this.tree != null) {
+            return this.tree;
+        }
+
+        List<int[]> nodes = new ArrayList<>();
+        List<Object> states = new ArrayList<>();
+        List<Integer> rules = new ArrayList<>();
+        byte[] known = new byte[this.conditions.size()];
+        Arrays.fill(known, (byte) -1);
+        this.build(0, known, nodes, states, rules, new HashMap<>());
+
+        /* Flatten the nodes into the arrays of the tree */
+        int count = nodes.size();
+        int[] condition = new int[count];
+        int[] whenTrue = new int[count];
+        int[] whenFalse = new int[count];
+        int[] rule = new int[count];
+        for (int i = 0; i < count; i++) {
+            condition[i] = nodes.get(i)[0];
+            whenTrue[i] = nodes.get(i)[1];
+            whenFalse[i] = nodes.get(i)[2];
+            rule[i] = rules.get(i);
+        }
+        Predicate<O>[] predicates = (Predicate<O>[]) this.conditions.toArray(new Predicate<?>[0]);
+        this.tree = new Tree<>(predicates, condition, whenTrue, whenFalse, states.toArray(), rule);
+        return this.tree;
+    }
+
+    /**
+     * Builds the node that decides the state, knowing the value of some of the
+     * conditions and that the rules before the specified one are not met.
+     *
+     * @param firstRule the first rule that may be met
+     * @param known the value of each condition: 1, 0 or -1 if it is unknown
+     * @param nodes the nodes built, as (condition, true child, false child)
+     * @param states the state of each node built
+     * @param rules the rule of each node built
+     * @param built the node already built for each first rule and known
+     * conditions
+     * @return the index of the node
+     */
+    private int build(int firstRule, byte[] known, List<int[]> nodes, List<Object> states, List<Integer> rules, Map<String, Integer> built) {
+        /* The same rule with the same known conditions gives the same subtree */
+        String key = firstRule + Arrays.toString(known);
+        Integer previous = built.get(key);
+        if (previous != null) {
+            return previous;
+        }
+
+        int node = nodes.size();
+        nodes.add(new int[]{-1, -1, -1});
+        states.add(this.defaultState);
+        rules.add(this.ruleStates.size());
+        built.put(key, node);
+
+        for (int rule = firstRule; rule < this.ruleStates.size(); rule++) {
+            int unknown = -1;
+            boolean failed = false;
+
+            /* Check the literals of the rule with the known conditions */
+            for (int literal : this.ruleLiterals.get(rule)) {
+                int condition = Math.abs(literal) - 1;
+                if (known[condition] < 0) {
+                    if (unknown < 0) {
+                        unknown = condition;
+                    }
+                } else if ((known[condition] == 1) != (literal > 0)) {
+                    failed = true;
+                    break;
+                }
+            }
+            if (failed == true) {
+                continue;
+            }
+
+            /* All the literals are met: the rule gives the state */
+            if (unknown < 0) {
+                states.set(node, this.ruleStates.get(rule));
+                rules.set(node, rule);
+                return node;
+            }
+
+            /* Otherwise the node reads the first unknown condition */
+            known[unknown] = 1;
+            int whenTrue = this.build(rule, known, nodes, states, rules, built);
+            known[unknown] = 0;
+            int whenFalse = this.build(rule, known, nodes, states, rules, built);
+            known[unknown] = -1;
+
+            nodes.set(node, new int[]{unknown, whenTrue, whenFalse});
+            return node;
+        }
+        return node;
+    }
+
+    /**
+     * Returns the state of the specified object, as the first rule that it
+     * meets, or the default state.
+     *
+     * @param object the object to evaluate
+     * @return the state of the object
+     */
+    @SuppressWarnings("unchecked")
+    public S evaluate(O object) {
+        Tree<O> current = this.tree();
+        return (S) current.nodeState[this.leafOf(current, object)];
+    }
+
+    /**
+     * Records in the metrics the rules decided to evaluate an object, as the
+     * functions checked by a tracker: the rules found not met before the one
+     * met, and the rule met (all of them for the default state).
+     *
+     * @param object the object to evaluate
+     * @param metrics the metrics of the tracker
+     * @return the state of the object
+     */
+    @SuppressWarnings("unchecked")
+    S evaluate(O object, TrackerMetrics<S> metrics) {
+        Tree<O> current = this.tree();
+        int leaf = this.leafOf(current, object);
+
+        int decided = Math.min(current.nodeRule[leaf] + 1, this.ruleStates.size());
+        for (int rule = 0; rule < decided; rule++) {
+            metrics.evaluated(this.ruleStates.get(rule));
+        }
+        return (S) current.nodeState[leaf];
+    }
+
+    /**
+     * Returns the decision tree, compiling it if the rules have changed.
+     *
+     * @return the decision tree
+     */
+    private Tree<O> tree() {
+        Tree<O> current = this.tree;
+        return (current == null) ? this.compile() : current;
+    }
+
+    /**
+     * Goes down the decision tree with the conditions of an object.
+     *
+     * @param current the decision tree
+     * @param object the object to evaluate
+     * @return the leaf reached
+     */
+    private int leafOf(Tree<O> current, O object) {
+        int node = 0;
+        int[] condition = current.nodeCondition;
+        while (condition[node] >= 0) {
+            node = (current.conditions[condition[node]].test(object) == true)
+                    ? current.nodeTrue[node] : current.nodeFalse[node];
+        }
+        return node;
+    }
+}
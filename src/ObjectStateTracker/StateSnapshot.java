@@ -0,0 +1,89 @@
+package ObjectStateTracker;
+
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * The objects of each state of a tracker at a past instant, returned by
+ * {@link ObjectStateTracker#snapshotAt(Instant)}. The members of each state
+ * are found when the snapshot is taken, and the counts are the sizes of the
+ * members, so later changes of the tracker do not change the snapshot.
+ *
+ * @param <O> the type of the objects of the tracker
+ * @param <S> the type of the states
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+public class StateSnapshot<O, S> {
+
+    private final Instant instant;
+    private final Map<S, Set<O>> members;
+    private final Map<S, Integer> counts = new LinkedHashMap<>();
+
+    /**
+     * Constructs a snapshot of the specified members.
+     *
+     * @param instant the instant of the snapshot
+     * @param members the objects of each state, in the order of the states
+     */
+    StateSnapshot(Instant instant, Map<S, Set<O>> members) {
+        this.instant = instant;
+        this.members = members;
+        for (Map.Entry<S, Set<O>> entry : members.entrySet()) {
+            this.counts.put(entry.getKey(), entry.getValue().size());
+        }
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns the instant of the snapshot.
+     *
+     * @return the instant
+     */
+    public Instant instant() {
+        return this.instant;
+    }
+
+    /**
+     * Returns the number of objects that were in the specified state.
+     *
+     * @param state the state to count
+     * @return the number of objects in the state
+     */
+    public int countIn(S state) {
+        return this.counts.getOrDefault(state, 0);
+    }
+
+    /**
+     * Returns the number of objects of each state, in the order of the states
+     * of the tracker.
+     *
+     * @return an unmodifiable map of the states and their counts
+     */
+    public Map<S, Integer> counts() {
+        return Collections.unmodifiableMap(this.counts);
+    }
+
+    /**
+     * Returns the objects that were in the specified state, in the order
+     * they are visited in the tracker.
+     *
+     * @param state the state to list
+     * @return an unmodifiable set of the objects in the state
+     */
+    public Set<O> objectsIn(S state) {
+        Set<O> stateMembers = this.members.get(state);
+        return (stateMembers == null) ? Collections.emptySet() : Collections.unmodifiableSet(stateMembers);
+    }
+
+    /**
+     * Returns a string representation of the snapshot: the number of objects
+     * of each state.
+     *
+     * @return a string representation of the snapshot
+     */
+    @Override
+    public String toString() {
+        return this.counts.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package ObjectStateTracker;
+
+import jdk.jfr.*;
+
+/**
+ * Flight Recorder event around a notification or a full update of a
+ * tracker, recorded when the events of its {@link TrackerMetrics} are
+ * enabled.
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+@Name("ObjectStateTracker.Update")
+@Label("Tracker Update")
+@Category("ObjectStateTracker")
+@Description("A notification or a full update of the states of a tracker")
+class TrackerEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Objects Re-evaluated")
+    long reevaluated;
+}
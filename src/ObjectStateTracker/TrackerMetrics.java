@@ -0,0 +1,278 @@
+package ObjectStateTracker;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Metrics of a tracker: notifications received, objects re-evaluated,
+ * functions checked per state, transitions per pair of states and the time
+ * of each evaluation. The counters are {@link LongAdder}s and the times are
+ * recorded in a few histograms, one per stripe of threads, each locked on
+ * its own, so the metrics can be recorded from many threads with little
+ * contention and their memory does not grow with the threads that come and
+ * go. Optionally, a Flight Recorder event is
+ * recorded around each notification and each full update.
+ *
+ * The metrics are recorded while they are set on a tracker (see
+ * {@link ObjectStateTracker#withMetrics(TrackerMetrics)}); a tracker without
+ * metrics only checks that they are not set.
+ *
+ * @param <S> the type of the states
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+public class TrackerMetrics<S> {
+
+    /* Key of the missing state, since the concurrent maps do not accept null */
+    private static final Object NO_STATE = new Object();
+
+    private final LongAdder notifications = new LongAdder();
+    private final LongAdder reevaluations = new LongAdder();
+    private final Map<Object, LongAdder> evaluations = new ConcurrentHashMap<>();
+    private final Map<Object, Map<Object, LongAdder>> transitions = new ConcurrentHashMap<>();
+
+    /* Histograms of the evaluation times, one per stripe of threads (a power of two, at least the processors) */
+    private final LogHistogram[] latencies;
+
+    /* If true, the Flight Recorder events are created */
+    private boolean events;
+
+    /* The tracker of the metrics, for the counts of objects */
+    private volatile ObjectStateTracker<?, S> tracker;
+
+    /**
+     * Constructs the metrics, without Flight Recorder events.
+     */
+    public TrackerMetrics() {
+        int processors = Runtime.getRuntime().availableProcessors();
+        this.latencies = new LogHistogram[Integer.highestOneBit(Math.max(1, processors - 1)) << 1];
+        for (int i = 0; i < this.latencies.length; i++) {
+            this.latencies[i] = new LogHistogram();
+        }
+    }
+
+    /**
+     * Sets if a Flight Recorder event is created around each notification and
+     * each full update. The events are only written while a recording that
+     * enables them is running.
+     *
+     * @param events true to create the events
+     * @return the TrackerMetrics instance
+     */
+    public TrackerMetrics<S> withEvents(boolean events) {
+        this.events = events;
+        return this;
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Sets the tracker of the metrics. It is called by
+     * {@link ObjectStateTracker#withMetrics(TrackerMetrics)}.
+     *
+     * @param tracker the tracker
+     */
+    void attach(ObjectStateTracker<?, S> tracker) {
+        this.tracker = tracker;
+    }
+
+    /**
+     * Returns the key of a state in the maps.
+     *
+     * @param state the state, or null
+     * @return the key of the state
+     */
+    private static Object keyOf(Object state) {
+        return (state == null) ? NO_STATE : state;
+    }
+
+    /**
+     * Returns the counter of a key, creating it if it is new. The counter is
+     * searched first without locking, since it exists on most calls.
+     *
+     * @param counters the counters
+     * @param key the key of the counter
+     * @return the counter
+     */
+    private static LongAdder counterOf(Map<Object, LongAdder> counters, Object key) {
+        LongAdder counter = counters.get(key);
+        return (counter != null) ? counter : counters.computeIfAbsent(key, created -> new LongAdder());
+    }
+
+    /**
+     * Starts the event of an operation, if the events are enabled.
+     *
+     * @param operation the name of the operation
+     * @return the event started, or null
+     */
+    TrackerEvent begin(String operation) {
+        if (this.events == false) {
+            return null;
+        }
+
+        TrackerEvent event = new TrackerEvent();
+        event.operation = operation;
+        event.reevaluated = this.reevaluations.sum();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Ends the event of an operation, with the objects re-evaluated since it
+     * started.
+     *
+     * @param event the event, or null
+     */
+    void end(TrackerEvent event) {
+        if (event != null) {
+            event.end();
+            if (event.shouldCommit() == true) {
+                event.reevaluated = this.reevaluations.sum() - event.reevaluated;
+                event.commit();
+            }
+        }
+    }
+
+    /**
+     * Counts a notification.
+     */
+    void notified() {
+        this.notifications.increment();
+    }
+
+    /**
+     * Counts the evaluation of an object and its time.
+     *
+     * @param nanos the time of the evaluation
+     */
+    void reevaluated(long nanos) {
+        this.reevaluations.increment();
+        LogHistogram latency = this.latencies[(int) Thread.currentThread().getId() & (this.latencies.length - 1)];
+        synchronized (latency) {
+            latency.record(nanos);
+        }
+    }
+
+    /**
+     * Counts the check of the function of a state.
+     *
+     * @param state the state
+     */
+    void evaluated(S state) {
+        counterOf(this.evaluations, keyOf(state)).increment();
+    }
+
+    /**
+     * Counts a transition.
+     *
+     * @param from the previous state, or null for the initial state
+     * @param to the new state
+     */
+    void transition(S from, S to) {
+        Map<Object, LongAdder> fromCounters = this.transitions.get(keyOf(from));
+        if (fromCounters == null) {
+            fromCounters = this.transitions.computeIfAbsent(keyOf(from), key -> new ConcurrentHashMap<>());
+        }
+        counterOf(fromCounters, keyOf(to)).increment();
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns the number of notifications received.
+     *
+     * @return the number of notifications
+     */
+    public long notifications() {
+        return this.notifications.sum();
+    }
+
+    /**
+     * Returns the number of evaluations of objects, for new objects,
+     * notifications and full updates.
+     *
+     * @return the number of objects re-evaluated
+     */
+    public long reevaluations() {
+        return this.reevaluations.sum();
+    }
+
+    /**
+     * Returns the times the function of a state has been checked. With
+     * compiled rules, the rules of the state decided in each evaluation are
+     * counted the same way (see {@link StateRules}), even
+     * if the decision tree read fewer conditions.
+     *
+     * @param state the state
+     * @return the number of checks of its function
+     */
+    public long evaluations(S state) {
+        LongAdder count = this.evaluations.get(keyOf(state));
+        return (count == null) ? 0 : count.sum();
+    }
+
+    /**
+     * Returns the times a state has been followed by another one.
+     *
+     * @param from the state before the transition, or null for the initial
+     * states
+     * @param to the state after the transition
+     * @return the number of transitions
+     */
+    public long transitions(S from, S to) {
+        LongAdder count = this.transitions.getOrDefault(keyOf(from), Collections.emptyMap()).get(keyOf(to));
+        return (count == null) ? 0 : count.sum();
+    }
+
+    /**
+     * Returns the distribution of the time of each evaluation, in
+     * nanoseconds. Each stripe is locked while it is read, so the
+     * evaluations recorded meanwhile are counted in some stripes and not in
+     * others, but never partly.
+     *
+     * @return a new histogram with the times of all the threads
+     */
+    public LogHistogram evaluationLatency() {
+        LogHistogram result = new LogHistogram();
+        for (LogHistogram latency : this.latencies) {
+            synchronized (latency) {
+                result.merge(latency);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of objects tracked.
+     *
+     * @return the number of objects, or 0 if the metrics are not set on a
+     * tracker
+     */
+    public long trackedObjects() {
+        ObjectStateTracker<?, S> current = this.tracker;
+        return (current == null) ? 0 : current.trajectories().count();
+    }
+
+    /**
+     * Returns the number of visits kept in all the trajectories. It goes over
+     * every trajectory, so it takes a time proportional to the number of
+     * objects.
+     *
+     * @return the number of visits, or 0 if the metrics are not set on a
+     * tracker
+     */
+    public long trajectoryEntries() {
+        ObjectStateTracker<?, S> current = this.tracker;
+        return (current == null) ? 0 : current.trajectories().mapToLong(entry -> entry.getValue().size()).sum();
+    }
+
+    /**
+     * Returns a string representation of the metrics.
+     *
+     * @return a string representation of the metrics
+     */
+    @Override
+    public String toString() {
+        return "notifications=" + this.notifications() + ", reevaluations=" + this.reevaluations()
+                + ", tracked=" + this.trackedObjects() + ", latency=[" + this.evaluationLatency() + "]";
+    }
+}
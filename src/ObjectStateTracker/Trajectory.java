@@ -1,24 +1,53 @@
 package ObjectStateTracker;
 
+import java.io.*;
 import java.util.*;
 import java.time.*;
 
 /**
- * Represents a trajectory of states.
+ * Represents a trajectory of states. The trajectory is an append-only log of
+ * visits, each one made of the identifier of the state and the instant of the
+ * visit (in nanoseconds since the epoch), kept in growable primitive arrays.
+ * A state can appear several times in the trajectory. The timestamps are only
+ * converted to date-times when they are read.
  *
  * @param <S> the type of the states in the trajectory
- * 
+ *
  * @author Gonzalo Jiménez and Luis Pastor
  */
 public class Trajectory<S> implements Iterable<S> {
 
-    private final Map<S, LocalDateTime> states;
+    /* Shared list of constants of each enum type, used as dictionary of states */
+    private static final ClassValue<Object[]> ENUM_CONSTANTS = new ClassValue<>() {
+        @Override
+        protected Object[] computeValue(Class<?> type) {
+            return type.getEnumConstants();
+        }
+    };
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    /* Dictionary of states: the enum constants, or the distinct states seen */
+    private Object[] dictionary;
+    private int dictionarySize;
+    private boolean enumDictionary;
+
+    /* Log of visits: state identifier and epoch-nanos of each one */
+    private int[] stateIds;
+    private long[] times;
+    private int size;
+
+    /* Visits removed from the middle of the log to keep it short, and the timestamp of the oldest one */
+    private int dropped;
+    private long gapStart;
 
     /**
      * Constructs an empty trajectory.
      */
     public Trajectory() {
-        this.states = new LinkedHashMap<>();
+        this.stateIds = new int[INITIAL_CAPACITY];
+        this.times = new long[INITIAL_CAPACITY];
+        this.size = 0;
     }
 
     /**
@@ -27,103 +56,382 @@ public class Trajectory<S> implements Iterable<S> {
      * @param firstState the initial state to add to the trajectory
      */
     public Trajectory(S firstState) {
-        this.states = new LinkedHashMap<>();
-        this.states.put(firstState, LocalDateTime.now());
+        this();
+        this.add(firstState);
     }
 
+    /*____________________________________________________________________*/
     /**
-     * Returns the map of states and their corresponding timestamps in the
-     * trajectory.
+     * Returns the identifier of a state in the dictionary, adding it if it is
+     * a new one. The null state is represented with -1.
+     *
+     * @param state the state to search
+     * @return the identifier of the state
+     */
+    private int idOf(S state) {
+        if (state == null) {
+            return -1;
+        }
+
+        /* Enum states are identified by its ordinal */
+        if (this.enumDictionary == true) {
+            return ((Enum<?>) state).ordinal();
+        }
+        if (this.dictionary == null && state instanceof Enum) {
+            this.dictionary = ENUM_CONSTANTS.get(((Enum<?>) state).getDeclaringClass());
+            this.enumDictionary = true;
+            return ((Enum<?>) state).ordinal();
+        }
+
+        /* Any other state is searched on the states seen before */
+        for (int i = 0; i < this.dictionarySize; i++) {
+            if (this.dictionary[i].equals(state)) {
+                return i;
+            }
+        }
+        if (this.dictionary == null) {
+            this.dictionary = new Object[INITIAL_CAPACITY];
+        } else if (this.dictionarySize == this.dictionary.length) {
+            this.dictionary = Arrays.copyOf(this.dictionary, this.dictionarySize * 2);
+        }
+        this.dictionary[this.dictionarySize] = state;
+        return this.dictionarySize++;
+    }
+
+    /**
+     * Returns the state with the specified identifier.
+     *
+     * @param id the identifier of the state
+     * @return the state, or null if the identifier is -1
+     */
+    @SuppressWarnings("unchecked")
+    private S stateOf(int id) {
+        return (id < 0) ? null : (S) this.dictionary[id];
+    }
+
+    /**
+     * Converts an instant in nanoseconds since the epoch to a date-time of the
+     * system time-zone.
+     *
+     * @param epochNanos the instant to convert
+     * @return the date-time of the instant
+     */
+    private static LocalDateTime toDateTime(long epochNanos) {
+        return LocalDateTime.ofInstant(Instant.ofEpochSecond(0, epochNanos), ZoneId.systemDefault());
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns a map of the visited states and their corresponding timestamps.
+     * The map is an unmodifiable view built from the trajectory: if a state has
+     * been visited several times, it keeps the position of its first visit and
+     * the timestamp of the last one.
      *
      * @return the map of states and timestamps
      */
     public Map<S, LocalDateTime> getStates() {
-        return this.states;
+        Map<S, LocalDateTime> states = new LinkedHashMap<>();
+
+        for (int i = 0; i < this.size; i++) {
+            states.put(this.stateOf(this.stateIds[i]), toDateTime(this.times[i]));
+        }
+        return Collections.unmodifiableMap(states);
     }
 
     /**
-     * Returns an iterator over the elements in this trajectory.
+     * Returns an iterator over the elements in this trajectory, including the
+     * repeated visits to a state.
      *
      * @return an iterator over the elements in this trajectory
      */
     @Override
     public Iterator<S> iterator() {
-        return this.states.keySet().iterator();
+        return new Iterator<S>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < Trajectory.this.size;
+            }
+
+            @Override
+            public S next() {
+                if (this.hasNext() == false) {
+                    throw new NoSuchElementException();
+                }
+                return Trajectory.this.get(this.next++);
+            }
+        };
     }
 
     /**
-     * Adds a state to the trajectory with the current timestamp.
+     * Adds a state to the trajectory with the current timestamp of the default
+     * monotonic clock.
      *
      * @param state the state to add
      */
     public void add(S state) {
-        this.states.put(state, LocalDateTime.now());
+        this.add(state, TrajectoryClock.MONOTONIC.epochNanos());
+    }
+
+    /**
+     * Adds a state to the trajectory with the specified timestamp. A timestamp
+     * earlier than the one of the last visit (from a clock that went back) is
+     * raised to it, so the timestamps stay in order for {@link #indexAt(long)}.
+     *
+     * @param state the state to add
+     * @param epochNanos the timestamp, in nanoseconds since the epoch
+     */
+    public void add(S state, long epochNanos) {
+        /* Grow the log if it is full */
+        if (this.size == this.stateIds.length) {
+            this.stateIds = Arrays.copyOf(this.stateIds, this.size * 2);
+            this.times = Arrays.copyOf(this.times, this.size * 2);
+        }
+
+        this.stateIds[this.size] = this.idOf(state);
+        this.times[this.size] = (this.size > 0) ? Math.max(epochNanos, this.times[this.size - 1]) : epochNanos;
+        this.size++;
+    }
+
+    /**
+     * Returns the number of visits in the trajectory.
+     *
+     * @return the number of visits
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Shortens the trajectory to the specified number of visits, removing the
+     * oldest ones but the first, so the initial state and the latest visits
+     * are kept. The removed visits are counted by {@link #dropped()}, and the
+     * timestamp of the oldest one is kept by {@link #gapStart()}: from it to
+     * the second visit kept the states are unknown.
+     *
+     * @param maxSize the number of visits to keep, at least 2
+     * @throws IllegalArgumentException if the number is lower than 2
+     */
+    public void truncate(int maxSize) throws IllegalArgumentException {
+        if (maxSize < 2) {
+            throw new IllegalArgumentException();
+        }
+        if (this.size <= maxSize) {
+            return;
+        }
+
+        int removed = this.size - maxSize;
+        if (this.dropped == 0) {
+            this.gapStart = this.times[1];
+        }
+        System.arraycopy(this.stateIds, 1 + removed, this.stateIds, 1, maxSize - 1);
+        System.arraycopy(this.times, 1 + removed, this.times, 1, maxSize - 1);
+        this.size = maxSize;
+        this.dropped += removed;
+    }
+
+    /**
+     * Returns the number of visits removed by {@link #truncate(int)}. The
+     * number of visits ever added is the size plus this count.
+     *
+     * @return the number of visits removed
+     */
+    public int dropped() {
+        return this.dropped;
+    }
+
+    /**
+     * Returns the timestamp of the oldest visit removed by
+     * {@link #truncate(int)}, where the window of unknown states between the
+     * first visit and the second one starts. It is only meaningful if some
+     * visits have been removed.
+     *
+     * @return the timestamp of the oldest removed visit, in nanoseconds since
+     * the epoch
+     */
+    public long gapStart() {
+        return this.gapStart;
+    }
+
+    /**
+     * Sets the visits removed from the trajectory, when it is read back from
+     * a checkpoint.
+     *
+     * @param dropped the number of visits removed
+     * @param gapStart the timestamp of the oldest removed visit
+     */
+    void setGap(int dropped, long gapStart) {
+        this.dropped = dropped;
+        this.gapStart = gapStart;
+    }
+
+    /**
+     * Returns whether the states are unknown at an instant, because the
+     * visits around it were removed by {@link #truncate(int)}.
+     *
+     * @param epochNanos the instant, in nanoseconds since the epoch
+     * @return true if the instant is inside the removed visits
+     */
+    public boolean inGap(long epochNanos) {
+        return this.dropped > 0 && epochNanos >= this.gapStart && this.size > 1 && epochNanos < this.times[1];
+    }
+
+    /**
+     * Returns the state of the visit at the specified position.
+     *
+     * @param index the position of the visit
+     * @return the state of the visit
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public S get(int index) throws IndexOutOfBoundsException {
+        return this.stateOf(this.stateIds[Objects.checkIndex(index, this.size)]);
+    }
+
+    /**
+     * Returns the timestamp of the visit at the specified position.
+     *
+     * @param index the position of the visit
+     * @return the timestamp of the visit
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public LocalDateTime timeAt(int index) throws IndexOutOfBoundsException {
+        return toDateTime(this.epochNanosAt(index));
+    }
+
+    /**
+     * Returns the timestamp of the visit at the specified position, in
+     * nanoseconds since the epoch.
+     *
+     * @param index the position of the visit
+     * @return the timestamp of the visit
+     * @throws IndexOutOfBoundsException if the position is out of range
+     */
+    public long epochNanosAt(int index) throws IndexOutOfBoundsException {
+        return this.times[Objects.checkIndex(index, this.size)];
+    }
+
+    /**
+     * Returns the position of the last visit made at or before the specified
+     * instant, searching the timestamps with a binary search. The timestamps
+     * are in order, since {@link #add(Object, long)} never lets them go back.
+     *
+     * @param epochNanos the instant, in nanoseconds since the epoch
+     * @return the position of the visit, or -1 if the first visit is later
+     */
+    public int indexAt(long epochNanos) {
+        int low = 0;
+        int high = this.size;
+
+        /* The first visit later than the instant, between low and high */
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.times[middle] <= epochNanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low - 1;
+    }
+
+    /**
+     * Returns the state of the trajectory at the specified instant: the state
+     * of the last visit made at or before it. If visits were removed by
+     * {@link #truncate(int)}, the state is unknown from the oldest removed
+     * visit to the second visit kept (see {@link #inGap(long)}).
+     *
+     * @param instant the instant
+     * @return the state at the instant, or null if the trajectory starts
+     * later or the state is unknown
+     */
+    public S stateAt(Instant instant) {
+        long epochNanos = TrajectoryClock.toEpochNanos(instant);
+        int index = this.indexAt(epochNanos);
+        return (index < 0 || this.inGap(epochNanos) == true) ? null : this.stateOf(this.stateIds[index]);
     }
 
     /**
      * Returns the first state in the trajectory.
      *
-     * @return the first state
+     * @return the first state, or null if the trajectory is empty
      */
     public S first() {
-        return new ArrayList<>(this.states.keySet()).get(0);
+        return (this.size == 0) ? null : this.stateOf(this.stateIds[0]);
     }
 
     /**
      * Returns the last state in the trajectory.
      *
-     * @return the last state
+     * @return the last state, or null if the trajectory is empty
      */
     public S last() {
-        S lastState = null;
-
-        for (S currentState : this.states.keySet()) {
-            lastState = currentState;
-        }
-        return lastState;
+        return (this.size == 0) ? null : this.stateOf(this.stateIds[this.size - 1]);
     }
 
     /**
-     * Returns a string representation of the trajectory. The string
-     * representation consists of a list of states and their corresponding
-     * timestamps. If there are multiple states, it shows the transition from
-     * the previous state to the current state. If there is only one state, it
-     * shows the state and its timestamp.
+     * Writes the representation of the trajectory to the specified output. It
+     * consists of a list of states and their corresponding timestamps. If
+     * there are multiple states, it shows the transition from the previous
+     * state to the current state. If there is only one state, it shows the
+     * state and its timestamp. The visits removed by {@link #truncate(int)}
+     * are shown as a gap, after which the state is shown without a previous
+     * one.
      *
-     * @return a string representation of the trajectory
+     * @param out the output to write to
+     * @throws IOException if the output fails
      */
-    @Override
-    public String toString() {
-        String buffer = "[";
+    public void print(Appendable out) throws IOException {
         S beforeState = null;
-        boolean first = true;
 
+        out.append('[');
         /* Iteration of each state saved */
-        for (Map.Entry<S, LocalDateTime> currentEntry : this.states.entrySet()) {
-            S currentState = currentEntry.getKey();
-            LocalDateTime currentTime = currentEntry.getValue();
+        for (int i = 0; i < this.size; i++) {
+            S currentState = this.stateOf(this.stateIds[i]);
+            String currentTime = toDateTime(this.times[i]).toString();
 
             /* Put a comma if it isn't the first element */
-            if (first == true) {
-                first = false;
-            } else {
-                buffer += ", ";
+            if (i > 0) {
+                out.append(", ");
+            }
+
+            /* The visits removed after the first one, whose states are unknown */
+            if (i == 1 && this.dropped > 0) {
+                out.append("(dropped: ").append(String.valueOf(this.dropped))
+                        .append(" from: ").append(toDateTime(this.gapStart).toString()).append("), ");
+                beforeState = null;
             }
 
             /* Check the type of msg to print */
             if (beforeState == null) {
-                buffer += "(in: " + currentState
-                        + " at: " + currentTime + ")";
+                out.append("(in: ").append(String.valueOf(currentState))
+                        .append(" at: ").append(currentTime).append(')');
             } else {
-                buffer += "(from: " + beforeState + " to " + currentState
-                        + " at " + currentTime + ")";
+                out.append("(from: ").append(String.valueOf(beforeState))
+                        .append(" to ").append(String.valueOf(currentState))
+                        .append(" at ").append(currentTime).append(')');
             }
 
             /* Iterate the state */
             beforeState = currentState;
         }
+        out.append(']');
+    }
 
-        buffer += "]";
-        return buffer;
+    /**
+     * Returns a string representation of the trajectory, as written by
+     * {@link #print(Appendable)}.
+     *
+     * @return a string representation of the trajectory
+     */
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        try {
+            this.print(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toString();
     }
 }
@@ -0,0 +1,61 @@
+package ObjectStateTracker;
+
+import java.time.Instant;
+
+/**
+ * The source of the timestamps of the trajectories, in nanoseconds since the
+ * epoch. A tracker can be given its own clock, so the timestamps can come
+ * from the system clock, or from a {@link ManualClock} in the tests. By
+ * default the trackers use {@link #MONOTONIC}, so an adjustment of the system
+ * clock never makes a trajectory go back in time.
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+@FunctionalInterface
+public interface TrajectoryClock {
+
+    /**
+     * The system clock, read on each timestamp. It follows the adjustments of
+     * the system clock, so it may go back.
+     */
+    TrajectoryClock SYSTEM = () -> TrajectoryClock.toEpochNanos(Instant.now());
+
+    /**
+     * A monotonic clock shared by the trackers, started when this interface
+     * is loaded. It is the default clock.
+     */
+    TrajectoryClock MONOTONIC = TrajectoryClock.monotonic();
+
+    /**
+     * Returns the current instant, in nanoseconds since the epoch.
+     *
+     * @return the current instant
+     */
+    long epochNanos();
+
+    /**
+     * Converts an instant to nanoseconds since the epoch, the unit of the
+     * timestamps of the trajectories.
+     *
+     * @param instant the instant to convert
+     * @return the nanoseconds since the epoch
+     * @throws ArithmeticException if the instant does not fit in a long
+     */
+    static long toEpochNanos(Instant instant) throws ArithmeticException {
+        return Math.addExact(Math.multiplyExact(instant.getEpochSecond(), 1_000_000_000L), instant.getNano());
+    }
+
+    /**
+     * Returns a clock that reads the system clock once, and then adds the
+     * nanoseconds elapsed on the monotonic timer. It is cheaper than the
+     * system clock and never goes back, but it does not follow the
+     * adjustments of the system clock made after it is created.
+     *
+     * @return a new monotonic clock
+     */
+    static TrajectoryClock monotonic() {
+        long startTicks = System.nanoTime();
+        long startNanos = SYSTEM.epochNanos();
+        return () -> startNanos + (System.nanoTime() - startTicks);
+    }
+}
@@ -0,0 +1,321 @@
+package ObjectStateTracker;
+
+import java.io.*;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+import java.util.function.ToLongFunction;
+
+/**
+ * An append-only log of the transitions of a tracker, kept on disk. Each
+ * transition, and each removal of an object, is a fixed-width record (object
+ * identifier, state index and timestamp) written to a memory-mapped segment
+ * file; when a segment is full
+ * the log goes on in a new one. The log is a listener of the tracker, and the
+ * tracker can rebuild its objects and trajectories from it after a restart
+ * (see {@link ObjectStateTracker#restore(TrajectoryLog, java.util.function.LongFunction)}).
+ *
+ * Each record takes 24 bytes: a marker, the index of the state in the states
+ * of the log (-1 for no state, -2 for a removal), the identifier of the object and the
+ * timestamp in nanoseconds since the epoch. The marker is written last, so a
+ * record is only read if it was completely written.
+ *
+ * @param <O> the type of the objects of the tracker
+ * @param <S> the type of the states
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+public class TrajectoryLog<O, S> implements TransitionListener<O, S>, Closeable {
+
+    /**
+     * Size of each record, in bytes.
+     */
+    public static final int RECORD_BYTES = 24;
+
+    /**
+     * Default size of each segment, in bytes.
+     */
+    public static final long DEFAULT_SEGMENT_BYTES = 64L * 1024 * 1024;
+
+    private static final int RECORD_MARKER = 0x54524a31;
+    private static final int NO_STATE = -1;
+    private static final int REMOVED = -2;
+    private static final String SEGMENT_FORMAT = "segment-%08d.log";
+
+    /* Directory of the segments, and their size rounded to whole records */
+    private final Path directory;
+    private final long segmentBytes;
+
+    /* Identifier of each object, and the states by index */
+    private final ToLongFunction<? super O> ids;
+    private final List<S> states;
+    private final Map<S, Integer> indexes = new HashMap<>();
+
+    /* Segment being written */
+    private int segment;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private boolean closed;
+
+    /**
+     * Called for each record when the log is read.
+     *
+     * @param <S> the type of the states
+     */
+    @FunctionalInterface
+    public interface Visitor<S> {
+
+        /**
+         * Receives a record of the log.
+         *
+         * @param id the identifier of the object
+         * @param state the state of the object, or null
+         * @param epochNanos the timestamp of the transition
+         */
+        void visit(long id, S state, long epochNanos);
+
+        /**
+         * Receives the removal of an object. By default it does nothing.
+         *
+         * @param id the identifier of the object
+         * @param epochNanos the timestamp of the removal
+         */
+        default void removed(long id, long epochNanos) {
+        }
+    }
+
+    /**
+     * Opens a log in the specified directory, creating it if needed. New
+     * records are appended after the ones already in the log.
+     *
+     * @param directory the directory of the segments
+     * @param segmentBytes the size of each segment, in bytes
+     * @param ids the function that gives the identifier of each object
+     * @param states the states that can be written, in the order of their
+     * indexes
+     * @throws IOException if the log can not be opened
+     * @throws IllegalArgumentException if a segment can not hold a record
+     */
+    @SafeVarargs
+    public TrajectoryLog(Path directory, long segmentBytes, ToLongFunction<? super O> ids, S... states) throws IOException, IllegalArgumentException {
+        if (segmentBytes < RECORD_BYTES || segmentBytes > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException();
+        }
+
+        this.directory = Files.createDirectories(directory);
+        this.segmentBytes = segmentBytes - segmentBytes % RECORD_BYTES;
+        this.ids = ids;
+        this.states = List.of(states);
+        for (int i = 0; i < states.length; i++) {
+            this.indexes.put(states[i], i);
+        }
+
+        /* Go on writing after the last record of the last segment */
+        int segments = this.segmentCount();
+        this.segment = Math.max(segments - 1, 0);
+        this.map(this.segment);
+        while (this.buffer.remaining() >= RECORD_BYTES && this.buffer.getInt(this.buffer.position()) == RECORD_MARKER) {
+            this.buffer.position(this.buffer.position() + RECORD_BYTES);
+        }
+    }
+
+    /**
+     * Opens a log in the specified directory, with segments of the default
+     * size.
+     *
+     * @param directory the directory of the segments
+     * @param ids the function that gives the identifier of each object
+     * @param states the states that can be written, in the order of their
+     * indexes
+     * @throws IOException if the log can not be opened
+     */
+    @SafeVarargs
+    public TrajectoryLog(Path directory, ToLongFunction<? super O> ids, S... states) throws IOException {
+        this(directory, DEFAULT_SEGMENT_BYTES, ids, states);
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns the path of a segment.
+     *
+     * @param number the number of the segment
+     * @return the path of the segment
+     */
+    private Path segmentPath(int number) {
+        return this.directory.resolve(String.format(SEGMENT_FORMAT, number));
+    }
+
+    /**
+     * Returns the number of segments of the log.
+     *
+     * @return the number of segments
+     */
+    private int segmentCount() {
+        int count = 0;
+        while (Files.exists(this.segmentPath(count)) == true) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Maps a segment to be written, creating it if needed.
+     *
+     * @param number the number of the segment
+     * @throws IOException if the segment can not be mapped
+     */
+    private void map(int number) throws IOException {
+        if (this.channel != null) {
+            this.buffer.force();
+            this.channel.close();
+        }
+        this.channel = FileChannel.open(this.segmentPath(number),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, this.segmentBytes);
+        this.segment = number;
+    }
+
+    /**
+     * Appends a record to the log, going on in a new segment if the current
+     * one is full.
+     *
+     * @param id the identifier of the object
+     * @param state the state of the object, or null
+     * @param epochNanos the timestamp of the transition
+     * @throws IllegalStateException if the state is not in the log, or the
+     * log is closed
+     * @throws UncheckedIOException if a new segment can not be created
+     */
+    public void append(long id, S state, long epochNanos) throws IllegalStateException, UncheckedIOException {
+        Integer index = (state == null) ? Integer.valueOf(NO_STATE) : this.indexes.get(state);
+        if (index == null) {
+            throw new IllegalStateException();
+        }
+        this.write(id, index, epochNanos);
+    }
+
+    /**
+     * Appends the removal of an object to the log.
+     *
+     * @param id the identifier of the object
+     * @param epochNanos the timestamp of the removal
+     * @throws IllegalStateException if the log is closed
+     * @throws UncheckedIOException if a new segment can not be created
+     */
+    public void appendRemoval(long id, long epochNanos) throws IllegalStateException, UncheckedIOException {
+        this.write(id, REMOVED, epochNanos);
+    }
+
+    /**
+     * Writes a record at the end of the log, going on in a new segment if the
+     * current one is full.
+     *
+     * @param id the identifier of the object
+     * @param index the index of the state, or one of the special values
+     * @param epochNanos the timestamp of the record
+     * @throws IllegalStateException if the log is closed
+     * @throws UncheckedIOException if a new segment can not be created
+     */
+    private synchronized void write(long id, int index, long epochNanos) throws IllegalStateException, UncheckedIOException {
+        if (this.closed == true) {
+            throw new IllegalStateException();
+        }
+
+        if (this.buffer.remaining() < RECORD_BYTES) {
+            try {
+                this.map(this.segment + 1);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /* The marker is written at the end, once the record is complete */
+        int position = this.buffer.position();
+        this.buffer.putInt(position + 4, index);
+        this.buffer.putLong(position + 8, id);
+        this.buffer.putLong(position + 16, epochNanos);
+        this.buffer.putInt(position, RECORD_MARKER);
+        this.buffer.position(position + RECORD_BYTES);
+    }
+
+    /**
+     * Appends the last transition of a trajectory to the log.
+     *
+     * @param object the object that has changed
+     * @param trajectory the trajectory of the object, ending in the new state
+     * @throws IllegalStateException if the state is not in the log, or the
+     * log is closed
+     */
+    @Override
+    public void transition(O object, Trajectory<S> trajectory) throws IllegalStateException {
+        int last = trajectory.size() - 1;
+        this.append(this.ids.applyAsLong(object), trajectory.get(last), trajectory.epochNanosAt(last));
+    }
+
+    /**
+     * Appends the removal of an object to the log, so it is not restored.
+     *
+     * @param object the removed object
+     * @param trajectory the trajectory of the object
+     * @param epochNanos the time of the removal
+     * @throws IllegalStateException if the log is closed
+     */
+    @Override
+    public void removed(O object, Trajectory<S> trajectory, long epochNanos) throws IllegalStateException {
+        this.appendRemoval(this.ids.applyAsLong(object), epochNanos);
+    }
+
+    /**
+     * Reads all the records of the log, in the order they were written.
+     *
+     * @param visitor the visitor that receives each record
+     * @throws IOException if a segment can not be read
+     */
+    public synchronized void replay(Visitor<? super S> visitor) throws IOException {
+        int segments = this.segmentCount();
+
+        for (int number = 0; number < segments; number++) {
+            MappedByteBuffer records;
+            try (FileChannel reader = FileChannel.open(this.segmentPath(number), StandardOpenOption.READ)) {
+                records = reader.map(FileChannel.MapMode.READ_ONLY, 0, reader.size());
+            }
+
+            /* The records of a segment end at the first one without marker */
+            for (int position = 0; position + RECORD_BYTES <= records.limit(); position += RECORD_BYTES) {
+                if (records.getInt(position) != RECORD_MARKER) {
+                    break;
+                }
+                int index = records.getInt(position + 4);
+                if (index == REMOVED) {
+                    visitor.removed(records.getLong(position + 8), records.getLong(position + 16));
+                } else {
+                    visitor.visit(records.getLong(position + 8), (index < 0) ? null : this.states.get(index),
+                            records.getLong(position + 16));
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the records appended to the segment file.
+     */
+    public synchronized void flush() {
+        this.buffer.force();
+    }
+
+    /**
+     * Writes the records appended and closes the log. No more records can be
+     * appended after it is closed.
+     *
+     * @throws IOException if the segment can not be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (this.closed == false) {
+            this.closed = true;
+            this.buffer.force();
+            this.channel.close();
+        }
+    }
+}
@@ -0,0 +1,566 @@
+package ObjectStateTracker;
+
+import java.util.*;
+
+/**
+ * An index of the transitions of a tracker in the order of their timestamps,
+ * used to count the objects of each state at a past instant without replaying
+ * the trajectories. Each transition is kept as the indexes of the states
+ * before and after it, its timestamp and its object, in arrays, and the counts
+ * of each state are saved every {@code CHECKPOINT_INTERVAL} transitions. The
+ * counts at an instant are the ones of the last checkpoint before it plus the
+ * transitions between the checkpoint and the instant, found with a binary
+ * search, so a query takes a time proportional to the interval and not to the
+ * number of transitions.
+ *
+ * The transitions added in order of time extend the sorted run, and the ones
+ * added out of order (such as the visits of the trajectories indexed when the
+ * index is created) are kept in a tail in the order they came. The tail is
+ * sorted and merged into the run before the next query or change of a
+ * transition.
+ *
+ * The index only keeps the transitions of the objects tracked, like the
+ * trajectories: when an object is removed its transitions are retired, and
+ * when the oldest visits of a trajectory are removed (see
+ * {@link Trajectory#truncate(int)}) their transitions are turned into a gap
+ * without state. A retired transition goes from no state to no state, so it
+ * does not change any count; the checkpoints after a changed transition are
+ * saved again before the next query, and the retired transitions are removed
+ * once they are half of the index. So the index never holds more than twice
+ * the visits of the tracked trajectories, plus their gaps.
+ *
+ * @param <S> the type of the states
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+class TransitionIndex<S> {
+
+    private static final int CHECKPOINT_INTERVAL = 1024;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NO_STATE = -1;
+
+    /* States of the tracker, and the index of each one */
+    private final List<S> states;
+    private final Map<S, Integer> indexes = new HashMap<>();
+
+    /* Transitions: state before, state after, timestamp and object; in order up to the sorted size, then as they came */
+    private int[] before = new int[INITIAL_CAPACITY];
+    private int[] after = new int[INITIAL_CAPACITY];
+    private long[] times = new long[INITIAL_CAPACITY];
+    private Object[] owners = new Object[INITIAL_CAPACITY];
+    private int size;
+    private int sortedSize;
+
+    /* Retired transitions, from no state to no state */
+    private int retired;
+
+    /* Counts of each state before each checkpoint of the sorted run (checkpoint * states + state), and after the last transition */
+    private int[] checkpoints;
+    private final int[] counts;
+
+    /* First transition whose checkpoints are out of date, or Integer.MAX_VALUE if all of them are saved */
+    private int stale = Integer.MAX_VALUE;
+
+    /**
+     * Constructs an empty index of the specified states.
+     *
+     * @param states the states of the tracker
+     */
+    TransitionIndex(Collection<S> states) {
+        this.states = new ArrayList<>(states);
+        for (int i = 0; i < this.states.size(); i++) {
+            this.indexes.put(this.states.get(i), i);
+        }
+        this.counts = new int[this.states.size()];
+        this.checkpoints = new int[this.states.size() * 4];
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns the index of a state.
+     *
+     * @param state the state, or null
+     * @return the index of the state, or -1 if it is null
+     * @throws IllegalStateException if the state is not in the index
+     */
+    private int indexOf(S state) throws IllegalStateException {
+        if (state == null) {
+            return NO_STATE;
+        }
+        Integer index = this.indexes.get(state);
+        if (index == null) {
+            throw new IllegalStateException();
+        }
+        return index;
+    }
+
+    /**
+     * Applies a transition to a set of counts, or undoes it.
+     *
+     * @param counts the counts of each state
+     * @param position the position of the transition
+     * @param sign 1 to apply the transition, -1 to undo it
+     */
+    private void apply(int[] counts, int position, int sign) {
+        if (this.before[position] != NO_STATE) {
+            counts[this.before[position]] -= sign;
+        }
+        if (this.after[position] != NO_STATE) {
+            counts[this.after[position]] += sign;
+        }
+    }
+
+    /**
+     * Appends a transition at the end. If it is in order and there is no
+     * tail, it extends the sorted run, saving the counts first if it starts a
+     * new checkpoint interval; otherwise it is added to the tail.
+     *
+     * @param owner the object of the transition
+     * @param from the index of the state before
+     * @param to the index of the state after
+     * @param epochNanos the timestamp of the transition
+     */
+    private void append(Object owner, int from, int to, long epochNanos) {
+        if (this.size == this.times.length) {
+            this.resize(this.size * 2);
+        }
+        boolean inOrder = this.sortedSize == this.size && (this.size == 0 || epochNanos >= this.times[this.size - 1]);
+        if (inOrder == true && this.size % CHECKPOINT_INTERVAL == 0) {
+            this.checkpoint(this.counts, this.size / CHECKPOINT_INTERVAL);
+        }
+
+        this.before[this.size] = from;
+        this.after[this.size] = to;
+        this.times[this.size] = epochNanos;
+        this.owners[this.size] = owner;
+        this.apply(this.counts, this.size, 1);
+        if (from == NO_STATE && to == NO_STATE) {
+            this.retired++;
+        }
+        this.size++;
+        if (inOrder == true) {
+            this.sortedSize = this.size;
+        }
+    }
+
+    /**
+     * Changes the arrays of the transitions to a new capacity.
+     *
+     * @param capacity the new capacity, at least the number of transitions
+     */
+    private void resize(int capacity) {
+        this.before = Arrays.copyOf(this.before, capacity);
+        this.after = Arrays.copyOf(this.after, capacity);
+        this.times = Arrays.copyOf(this.times, capacity);
+        this.owners = Arrays.copyOf(this.owners, capacity);
+    }
+
+    /**
+     * Saves a set of counts as a checkpoint.
+     *
+     * @param counts the counts of each state
+     * @param checkpoint the number of the checkpoint
+     */
+    private void checkpoint(int[] counts, int checkpoint) {
+        int width = counts.length;
+        if ((checkpoint + 1) * width > this.checkpoints.length) {
+            this.checkpoints = Arrays.copyOf(this.checkpoints, Math.max(this.checkpoints.length * 2, (checkpoint + 1) * width));
+        }
+        System.arraycopy(counts, 0, this.checkpoints, checkpoint * width, width);
+    }
+
+    /**
+     * Sorts the tail by the timestamps and merges it into the sorted run. The
+     * transitions with the same timestamp keep the order they were added. The
+     * checkpoints from the first merged transition are out of date.
+     */
+    private void merge() {
+        int tail = this.size - this.sortedSize;
+        int[] order = new int[tail];
+        for (int i = 0; i < tail; i++) {
+            order[i] = this.sortedSize + i;
+        }
+        sortByTime(order, this.times);
+
+        /* The first transition of the run after the first one of the tail */
+        int low = this.firstAfter(this.times[order[0]], this.sortedSize);
+
+        /* Merge the rest of the run with the tail, from that transition on */
+        int count = this.size - low;
+        int[] mergedBefore = new int[count];
+        int[] mergedAfter = new int[count];
+        long[] mergedTimes = new long[count];
+        Object[] mergedOwners = new Object[count];
+        int run = low;
+        int next = 0;
+        for (int i = 0; i < count; i++) {
+            int position = (next == tail || (run < this.sortedSize && this.times[run] <= this.times[order[next]])) ? run++ : order[next++];
+            mergedBefore[i] = this.before[position];
+            mergedAfter[i] = this.after[position];
+            mergedTimes[i] = this.times[position];
+            mergedOwners[i] = this.owners[position];
+        }
+        System.arraycopy(mergedBefore, 0, this.before, low, count);
+        System.arraycopy(mergedAfter, 0, this.after, low, count);
+        System.arraycopy(mergedTimes, 0, this.times, low, count);
+        System.arraycopy(mergedOwners, 0, this.owners, low, count);
+
+        /* The checkpoints are saved up to the end of the old run */
+        this.stale = Math.min(this.stale, Math.min(low, this.sortedSize - 1));
+        this.sortedSize = this.size;
+    }
+
+    /**
+     * Sorts positions by their timestamps with a merge sort, keeping the
+     * order of the positions with the same timestamp.
+     *
+     * @param order the positions to sort
+     * @param times the timestamp of each position
+     */
+    private static void sortByTime(int[] order, long[] times) {
+        int length = order.length;
+        int[] source = order;
+        int[] target = new int[length];
+
+        for (int width = 1; width < length; width *= 2) {
+            for (int start = 0; start < length; start += 2 * width) {
+                int middle = Math.min(start + width, length);
+                int end = Math.min(start + 2 * width, length);
+                int left = start;
+                int right = middle;
+                for (int i = start; i < end; i++) {
+                    target[i] = (right == end || (left < middle && times[source[left]] <= times[source[right]])) ? source[left++] : source[right++];
+                }
+            }
+            int[] swap = source;
+            source = target;
+            target = swap;
+        }
+        if (source != order) {
+            System.arraycopy(source, 0, order, 0, length);
+        }
+    }
+
+    /**
+     * Merges the tail into the sorted run, if there is a tail.
+     */
+    private void sort() {
+        if (this.sortedSize < this.size) {
+            this.merge();
+        }
+    }
+
+    /**
+     * Sorts the transitions and saves again the checkpoints that are out of
+     * date, from the last one saved before the first changed transition.
+     */
+    private void refresh() {
+        this.sort();
+        if (this.stale >= this.size) {
+            this.stale = Integer.MAX_VALUE;
+            return;
+        }
+
+        int width = this.counts.length;
+        int checkpoint = this.stale / CHECKPOINT_INTERVAL;
+        int[] current = Arrays.copyOfRange(this.checkpoints, checkpoint * width, (checkpoint + 1) * width);
+        for (int position = checkpoint * CHECKPOINT_INTERVAL; position < this.size; position++) {
+            if (position % CHECKPOINT_INTERVAL == 0) {
+                this.checkpoint(current, position / CHECKPOINT_INTERVAL);
+            }
+            this.apply(current, position, 1);
+        }
+        this.stale = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Returns the first transition of the sorted run after an instant.
+     *
+     * @param epochNanos the instant, in nanoseconds since the epoch
+     * @param end the end of the search
+     * @return the position of the first transition after the instant, or the
+     * end if there is none
+     */
+    private int firstAfter(long epochNanos, int end) {
+        int low = 0;
+        int high = end;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (this.times[middle] <= epochNanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns a transition of an object, searching among the transitions of
+     * its timestamp in the sorted run. The first one that matches is
+     * returned, so the transitions of an object with the same timestamp are
+     * found in the order they were added.
+     *
+     * @param owner the object of the transition
+     * @param epochNanos the timestamp of the transition
+     * @param from the index of the state before
+     * @param to the index of the state after
+     * @return the position of the transition, or -1 if it is not found
+     */
+    private int find(Object owner, long epochNanos, int from, int to) {
+        for (int position = this.firstAfter(epochNanos - 1, this.size); position < this.size && this.times[position] == epochNanos; position++) {
+            if (this.owners[position] == owner && this.before[position] == from && this.after[position] == to) {
+                return position;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Changes the states of a transition of the sorted run, updating the
+     * counts after the last transition. The checkpoints after it are out of
+     * date. A transition changed to go from no state to no state is retired,
+     * and forgets its object.
+     *
+     * @param position the position of the transition
+     * @param from the new index of the state before
+     * @param to the new index of the state after
+     */
+    private void change(int position, int from, int to) {
+        if (this.before[position] == NO_STATE && this.after[position] == NO_STATE) {
+            return;
+        }
+
+        this.apply(this.counts, position, -1);
+        this.before[position] = from;
+        this.after[position] = to;
+        this.apply(this.counts, position, 1);
+        if (from == NO_STATE && to == NO_STATE) {
+            this.owners[position] = null;
+            this.retired++;
+        }
+        this.stale = Math.min(this.stale, position);
+    }
+
+    /**
+     * Removes the retired transitions once they are half of the index, and
+     * shrinks the arrays if they are mostly empty. All the checkpoints are
+     * saved again.
+     */
+    private void compact() {
+        if (this.retired * 2 <= this.size) {
+            return;
+        }
+        this.sort();
+
+        int kept = 0;
+        for (int position = 0; position < this.size; position++) {
+            if (this.before[position] != NO_STATE || this.after[position] != NO_STATE) {
+                this.before[kept] = this.before[position];
+                this.after[kept] = this.after[position];
+                this.times[kept] = this.times[position];
+                this.owners[kept] = this.owners[position];
+                kept++;
+            }
+        }
+        Arrays.fill(this.owners, kept, this.size, null);
+        this.size = kept;
+        this.sortedSize = kept;
+        this.retired = 0;
+        if (this.times.length > INITIAL_CAPACITY && this.times.length > kept * 4) {
+            this.resize(Math.max(INITIAL_CAPACITY, kept * 2));
+        }
+
+        int width = this.counts.length;
+        this.checkpoints = new int[Math.max(width * 4, (kept / CHECKPOINT_INTERVAL + 1) * width)];
+        this.stale = 0;
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Adds all the visits of a trajectory as transitions. If visits were
+     * removed from the trajectory, the object has no known state from the
+     * oldest removed visit to the second visit kept.
+     *
+     * @param owner the object of the trajectory
+     * @param trajectory the trajectory to index
+     * @throws IllegalStateException if a state is not in the index
+     */
+    synchronized void addTrajectory(Object owner, Trajectory<S> trajectory) throws IllegalStateException {
+        int previous = NO_STATE;
+        for (int i = 0; i < trajectory.size(); i++) {
+            if (i == 1 && trajectory.dropped() > 0) {
+                this.append(owner, previous, NO_STATE, trajectory.gapStart());
+                previous = NO_STATE;
+            }
+            int current = this.indexOf(trajectory.get(i));
+            this.append(owner, previous, current, trajectory.epochNanosAt(i));
+            previous = current;
+        }
+    }
+
+    /**
+     * Adds the last transition of a trajectory.
+     *
+     * @param owner the object of the trajectory
+     * @param trajectory the trajectory of the object, ending in the new state
+     * @throws IllegalStateException if a state is not in the index
+     */
+    synchronized void transition(Object owner, Trajectory<S> trajectory) throws IllegalStateException {
+        int last = trajectory.size() - 1;
+        int from = (last > 0) ? this.indexOf(trajectory.get(last - 1)) : NO_STATE;
+        this.append(owner, from, this.indexOf(trajectory.get(last)), trajectory.epochNanosAt(last));
+    }
+
+    /**
+     * Turns into a gap the transitions of the oldest visits of a trajectory
+     * but the first one, before they are removed from it: the object has no
+     * state from the first removed visit to the next one kept.
+     *
+     * @param owner the object of the trajectory
+     * @param trajectory the trajectory of the object, before it is truncated
+     * @param removed the number of visits that will be removed
+     * @throws IllegalStateException if a state is not in the index
+     */
+    synchronized void truncate(Object owner, Trajectory<S> trajectory, int removed) throws IllegalStateException {
+        this.sort();
+
+        /* The transition into each removed visit loses its new state, and the one after it its old state */
+        int previous = (trajectory.dropped() == 0) ? this.indexOf(trajectory.get(0)) : NO_STATE;
+        for (int i = 1; i <= removed + 1 && i < trajectory.size(); i++) {
+            int current = this.indexOf(trajectory.get(i));
+            int position = this.find(owner, trajectory.epochNanosAt(i), previous, current);
+            if (position >= 0) {
+                this.change(position, (i == 1) ? previous : NO_STATE, (i <= removed) ? NO_STATE : current);
+            }
+            previous = current;
+        }
+        this.compact();
+    }
+
+    /**
+     * Retires the transitions of a removed object, so it is not counted at
+     * any instant.
+     *
+     * @param owner the removed object
+     * @param trajectory the trajectory of the object
+     * @throws IllegalStateException if a state is not in the index
+     */
+    synchronized void remove(Object owner, Trajectory<S> trajectory) throws IllegalStateException {
+        this.sort();
+
+        int previous = NO_STATE;
+        for (int i = 0; i < trajectory.size(); i++) {
+            if (i == 1 && trajectory.dropped() > 0) {
+                this.retire(owner, trajectory.gapStart(), previous, NO_STATE);
+                previous = NO_STATE;
+            }
+            int current = this.indexOf(trajectory.get(i));
+            this.retire(owner, trajectory.epochNanosAt(i), previous, current);
+            previous = current;
+        }
+        this.compact();
+    }
+
+    /**
+     * Retires a transition of an object, if it is found.
+     *
+     * @param owner the object of the transition
+     * @param epochNanos the timestamp of the transition
+     * @param from the index of the state before
+     * @param to the index of the state after
+     */
+    private void retire(Object owner, long epochNanos, int from, int to) {
+        int position = this.find(owner, epochNanos, from, to);
+        if (position >= 0) {
+            this.change(position, NO_STATE, NO_STATE);
+        }
+    }
+
+    /**
+     * Returns the number of objects of each state at the specified instant,
+     * after the transitions made at or before it.
+     *
+     * @param epochNanos the instant, in nanoseconds since the epoch
+     * @return the count of each state, in the order of the states
+     */
+    synchronized Map<S, Integer> countsAt(long epochNanos) {
+        this.refresh();
+
+        /* The checkpoint before the first transition after the instant, and the transitions since */
+        int low = this.firstAfter(epochNanos, this.size);
+        int width = this.counts.length;
+        int checkpoint = low / CHECKPOINT_INTERVAL;
+        int[] result = (checkpoint * CHECKPOINT_INTERVAL == this.size) ? this.counts.clone()
+                : Arrays.copyOfRange(this.checkpoints, checkpoint * width, (checkpoint + 1) * width);
+        for (int position = checkpoint * CHECKPOINT_INTERVAL; position < low; position++) {
+            this.apply(result, position, 1);
+        }
+
+        Map<S, Integer> counts = new LinkedHashMap<>();
+        for (int i = 0; i < width; i++) {
+            counts.put(this.states.get(i), result[i]);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the objects of each state at the specified instant, after the
+     * transitions made at or before it. The state of an object that has
+     * changed since the instant is the one before its first transition after
+     * it, and the others are still in their current state, so it takes a
+     * time proportional to the objects plus the transitions since the
+     * instant. If there are more transitions since the instant than objects,
+     * searching each trajectory is faster, and nothing is returned.
+     *
+     * @param <O> the type of the objects
+     * @param current the tracked objects and their trajectories, whose last
+     * visits are the current states
+     * @param epochNanos the instant, in nanoseconds since the epoch
+     * @return the objects of each state, in the order of the states, or null
+     * if there are more transitions since the instant than objects
+     */
+    synchronized <O> Map<S, Set<O>> membersAt(Map<O, Trajectory<S>> current, long epochNanos) {
+        this.sort();
+        int low = this.firstAfter(epochNanos, this.size);
+        if (this.size - low > current.size()) {
+            return null;
+        }
+
+        /* The state before the first transition of each object after the instant */
+        Map<Object, Integer> changed = new IdentityHashMap<>();
+        for (int position = low; position < this.size; position++) {
+            if (this.owners[position] != null) {
+                changed.putIfAbsent(this.owners[position], this.before[position]);
+            }
+        }
+
+        List<Set<O>> members = new ArrayList<>(this.states.size());
+        for (int i = 0; i < this.states.size(); i++) {
+            members.add(new LinkedHashSet<>());
+        }
+        for (Map.Entry<O, Trajectory<S>> entry : current.entrySet()) {
+            Integer before = changed.get(entry.getKey());
+            int state = (before != null) ? before : this.indexOf(entry.getValue().last());
+            if (state != NO_STATE) {
+                members.get(state).add(entry.getKey());
+            }
+        }
+
+        Map<S, Set<O>> result = new LinkedHashMap<>();
+        for (int i = 0; i < members.size(); i++) {
+            result.put(this.states.get(i), members.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of transitions kept, including the retired ones not
+     * removed yet.
+     *
+     * @return the number of transitions
+     */
+    synchronized int size() {
+        return this.size;
+    }
+}
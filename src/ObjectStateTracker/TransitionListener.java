@@ -0,0 +1,34 @@
+package ObjectStateTracker;
+
+/**
+ * A listener of the transitions of the objects of a tracker.
+ *
+ * @param <O> the type of the objects
+ * @param <S> the type of the states
+ *
+ * @author Gonzalo Jiménez and Luis Pastor
+ */
+public interface TransitionListener<O, S> {
+
+    /**
+     * Called after a new state has been added to the trajectory of an object.
+     * If the trajectory has a single state, it is the initial state of a new
+     * object; otherwise the object has moved from the state before the last
+     * one to the last one.
+     *
+     * @param object the object that has changed
+     * @param trajectory the trajectory of the object, ending in the new state
+     */
+    void transition(O object, Trajectory<S> trajectory);
+
+    /**
+     * Called after an object has been removed from the tracker. By default it
+     * does nothing.
+     *
+     * @param object the removed object
+     * @param trajectory the trajectory of the object
+     * @param epochNanos the time of the removal, from the clock of the tracker
+     */
+    default void removed(O object, Trajectory<S> trajectory, long epochNanos) {
+    }
+}
@@ -1,21 +1,47 @@
 package Process;
 
+import java.io.*;
 import java.util.*;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.stream.Collector;
 import ObjectStateTracker.*;
 
 /**
- * Represents a process that tracks states and connections between them.
+ * Represents a process that tracks states and connections between them. Each
+ * state gets an index (its position in the sorted states), and the counters
+ * are kept in atomic arrays of longs: the times each state has been initial and
+ * final, and a flat matrix with the times each state has been followed by
+ * each other state. For each transition it also keeps a histogram of the
+ * time spent in the first state before moving to the second one, so the
+ * dwell time of each state is the sum of the histograms of its transitions;
+ * the histograms are only read for the times, the counts come from the
+ * matrix.
+ *
+ * A process can be built from finished trajectories, or follow a tracker and
+ * be updated on each transition. The counters are atomic and each histogram
+ * is locked on its own, so several threads can update and read a process
+ * without a global lock, and reading the counts takes no lock at all; a read while it is being updated may see some of
+ * the counters of a transition and not the others.
  *
  * @param <S> the type of states in the process
  *
  * @author Gonzalo Jiménez and Luis Pastor
  */
-public class Process<S> {
+public class Process<S> implements TransitionListener<Object, S> {
+
+    /* Sorted states, and the index of each one (by ordinal for enums) */
+    private final List<S> states;
+    private final Map<S, Integer> indexes = new HashMap<>();
+    private int[] ordinalIndexes;
 
-    private final Set<S> states = new TreeSet<>();
-    private final Map<S, Integer> statesBegin = new HashMap<>();
-    private final Map<S, Integer> statesFinal = new HashMap<>();
-    private final Map<S, Map<S, Integer>> statesConnection = new HashMap<>();
+    /* Counters of initial and final states, and of transitions (from * size + to) */
+    private final AtomicLongArray statesBegin;
+    private final AtomicLongArray statesFinal;
+    private final AtomicLongArray statesConnection;
+
+    /* Histograms of the time before each transition (from * size + to), created on its first use */
+    private final AtomicReferenceArray<LogHistogram> latencies;
 
     /**
      * Constructs a new Process object with the given states.
@@ -23,56 +49,352 @@ public class Process<S> {
      * @param values the states to be added to the process
      */
     public Process(S... values) {
-        /* Add the states to the set */
-        this.states.addAll(Arrays.asList(values));
+        /* Sort the states, without repetitions */
+        this.states = new ArrayList<>(new TreeSet<>(Arrays.asList(values)));
+        int size = this.states.size();
 
-        /* Init all the states value */
-        for (S currentState : values) {
-            this.statesBegin.put(currentState, 0);
-            this.statesFinal.put(currentState, 0);
+        /* Give an index to each state */
+        for (int i = 0; i < size; i++) {
+            this.indexes.put(this.states.get(i), i);
+        }
+        if (size > 0 && this.states.get(0) instanceof Enum) {
+            Enum<?> sample = (Enum<?>) this.states.get(0);
+            this.ordinalIndexes = new int[sample.getDeclaringClass().getEnumConstants().length];
+            Arrays.fill(this.ordinalIndexes, -1);
+            for (int i = 0; i < size; i++) {
+                this.ordinalIndexes[((Enum<?>) this.states.get(i)).ordinal()] = i;
+            }
         }
 
-        for (S stateToSave : values) {
-            Map<S, Integer> connections = new TreeMap<>();
+        /* Init all the counters */
+        this.statesBegin = new AtomicLongArray(size);
+        this.statesFinal = new AtomicLongArray(size);
+        this.statesConnection = new AtomicLongArray(size * size);
+        this.latencies = new AtomicReferenceArray<>(size * size);
+    }
 
-            for (S stateToAdd : values) {
-                if (stateToSave != stateToAdd) {
-                    connections.put(stateToAdd, 0);
+    /**
+     * Constructs a copy of another process.
+     *
+     * @param other the process to copy
+     */
+    private Process(Process<S> other) {
+        this.states = other.states;
+        this.indexes.putAll(other.indexes);
+        this.ordinalIndexes = other.ordinalIndexes;
+        this.statesBegin = copy(other.statesBegin);
+        this.statesFinal = copy(other.statesFinal);
+        this.statesConnection = copy(other.statesConnection);
+        this.latencies = new AtomicReferenceArray<>(other.latencies.length());
+        for (int i = 0; i < this.latencies.length(); i++) {
+            LogHistogram latency = other.latencies.get(i);
+            if (latency != null) {
+                synchronized (latency) {
+                    this.latencies.set(i, latency.copy());
                 }
             }
+        }
+    }
 
-            this.statesConnection.put(stateToSave, connections);
+    /**
+     * Copies an array of counters, reading each one atomically.
+     *
+     * @param counters the counters to copy
+     * @return the copy of the counters
+     */
+    private static AtomicLongArray copy(AtomicLongArray counters) {
+        long[] values = new long[counters.length()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = counters.get(i);
         }
+        return new AtomicLongArray(values);
     }
 
+    /*____________________________________________________________________*/
     /**
-     * Adds a trajectory to the process.
+     * Returns the index of a state.
      *
-     * @param trajectory the trajectory to be added
+     * @param state the state to search
+     * @return the index of the state
+     * @throws IllegalStateException if the state is not in the process
      */
-    public void add(Trajectory<S> trajectory) {
-        Integer count;
+    private int indexOf(S state) throws IllegalStateException {
+        int index = -1;
 
-        /* Get the first element */
-        S firstState = trajectory.first();
-        count = this.statesBegin.get(firstState);
-        this.statesBegin.put(firstState, count + 1);
+        if (this.ordinalIndexes != null && state instanceof Enum) {
+            index = this.ordinalIndexes[((Enum<?>) state).ordinal()];
+        } else if (state != null) {
+            Integer found = this.indexes.get(state);
+            index = (found == null) ? -1 : found;
+        }
+
+        if (index < 0) {
+            throw new IllegalStateException();
+        }
+        return index;
+    }
 
-        /* Get the the last element */
-        S lastState = trajectory.last();
-        count = this.statesFinal.get(lastState);
-        this.statesFinal.put(lastState, count + 1);
+    /**
+     * Counts a transition, and the time spent in the first state before it.
+     *
+     * @param edge the index of the transition (from * size + to)
+     * @param nanos the nanoseconds spent in the first state
+     */
+    private void countTransition(int edge, long nanos) {
+        this.statesConnection.incrementAndGet(edge);
+        LogHistogram latency = this.latency(edge);
+        synchronized (latency) {
+            latency.record(nanos);
+        }
+    }
+
+    /**
+     * Returns the histogram of a transition, creating it on its first use.
+     *
+     * @param edge the index of the transition (from * size + to)
+     * @return the histogram of the transition
+     */
+    private LogHistogram latency(int edge) {
+        LogHistogram latency = this.latencies.get(edge);
+        if (latency == null) {
+            this.latencies.compareAndSet(edge, null, new LogHistogram());
+            latency = this.latencies.get(edge);
+        }
+        return latency;
+    }
+
+    /**
+     * Adds a trajectory to the process. Empty trajectories are ignored. If
+     * visits were removed from the trajectory (see
+     * {@link Trajectory#truncate(int)}), the transitions inside the gap are
+     * unknown, so the first visit is not followed by the second one.
+     *
+     * @param trajectory the trajectory to be added
+     * @throws IllegalStateException if a state of the trajectory is not in the
+     * process
+     */
+    public void add(Trajectory<S> trajectory) throws IllegalStateException {
+        int size = trajectory.size();
+        if (size == 0) {
+            return;
+        }
+
+        /* Get the first and the last element */
+        int before = this.indexOf(trajectory.get(0));
+        this.statesBegin.incrementAndGet(before);
+        this.statesFinal.incrementAndGet(this.indexOf(trajectory.get(size - 1)));
 
         /* Check the road of the states */
-        S beforeState = null;
-        for (S currentState : trajectory) {
-            if (beforeState != null) {
-                Map<S, Integer> nextConnectionState = this.statesConnection.get(beforeState);
-                Integer roadCount = nextConnectionState.get(currentState);
-                nextConnectionState.put(currentState, roadCount + 1);
+        for (int i = 1; i < size; i++) {
+            int current = this.indexOf(trajectory.get(i));
+            if (i > 1 || trajectory.dropped() == 0) {
+                this.countTransition(before * this.states.size() + current,
+                        trajectory.epochNanosAt(i) - trajectory.epochNanosAt(i - 1));
             }
+            before = current;
+        }
+    }
+
+    /**
+     * Adds the trajectories of a tracker to the process, and then keeps it
+     * updated with each transition of the tracker. It must be called before
+     * the tracker is shared between threads.
+     *
+     * @param tracker the tracker to follow
+     * @return this process
+     * @throws IllegalStateException if a state of the tracker is not in the
+     * process
+     */
+    public Process<S> follow(ObjectStateTracker<?, S> tracker) throws IllegalStateException {
+        tracker.trajectories().forEach(entry -> this.add(entry.getValue()));
+        tracker.withListener(this);
+        return this;
+    }
 
-            beforeState = currentState;
+    /**
+     * Updates the counters with the last transition of a trajectory: a new
+     * initial (and final) state, or a transition that also moves the final
+     * state of the object.
+     *
+     * @param object the object that has changed
+     * @param trajectory the trajectory of the object, ending in the new state
+     * @throws IllegalStateException if a state is not in the process
+     */
+    @Override
+    public void transition(Object object, Trajectory<S> trajectory) throws IllegalStateException {
+        int size = trajectory.size();
+        int current = this.indexOf(trajectory.get(size - 1));
+
+        if (size == 1) {
+            this.statesBegin.incrementAndGet(current);
+        } else {
+            int before = this.indexOf(trajectory.get(size - 2));
+            this.statesFinal.decrementAndGet(before);
+            this.countTransition(before * this.states.size() + current,
+                    trajectory.epochNanosAt(size - 1) - trajectory.epochNanosAt(size - 2));
+        }
+        this.statesFinal.incrementAndGet(current);
+    }
+
+    /**
+     * Returns a copy of the current counters of the process. It takes a time
+     * proportional to the square of the number of states.
+     *
+     * @return the copy of the process
+     */
+    public Process<S> snapshot() {
+        return new Process<>(this);
+    }
+
+    /**
+     * Adds the counters of another process with the same states to this one.
+     * The other process is copied first, so it is never locked while this one
+     * is updated.
+     *
+     * @param other the process to add
+     * @return this process
+     * @throws IllegalStateException if the processes have different states
+     */
+    public Process<S> merge(Process<S> other) throws IllegalStateException {
+        if (this.states.equals(other.states) == false) {
+            throw new IllegalStateException();
+        }
+        other = other.snapshot();
+
+        for (int i = 0; i < this.statesBegin.length(); i++) {
+            this.statesBegin.addAndGet(i, other.statesBegin.get(i));
+            this.statesFinal.addAndGet(i, other.statesFinal.get(i));
+        }
+        for (int i = 0; i < this.latencies.length(); i++) {
+            this.statesConnection.addAndGet(i, other.statesConnection.get(i));
+            LogHistogram added = other.latencies.get(i);
+            if (added != null) {
+                LogHistogram latency = this.latency(i);
+                synchronized (latency) {
+                    latency.merge(added);
+                }
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Returns a collector that builds a process with the given states from a
+     * stream of trajectories. On a parallel stream each thread fills its own
+     * process and then they are merged, for example:
+     * {@code tracker.trajectories().parallel().map(Map.Entry::getValue).collect(Process.collector(values))}.
+     *
+     * @param <S> the type of states in the process
+     * @param values the states of the process
+     * @return the collector of trajectories
+     */
+    @SafeVarargs
+    public static <S> Collector<Trajectory<S>, Process<S>, Process<S>> collector(S... values) {
+        return Collector.of(() -> new Process<>(values), Process::add, Process::merge,
+                Collector.Characteristics.IDENTITY_FINISH, Collector.Characteristics.UNORDERED);
+    }
+
+    /**
+     * Returns the times the specified state has been the initial state.
+     *
+     * @param state the state
+     * @return the times it has been initial
+     * @throws IllegalStateException if the state is not in the process
+     */
+    public long initialCount(S state) throws IllegalStateException {
+        return this.statesBegin.get(this.indexOf(state));
+    }
+
+    /**
+     * Returns the times the specified state has been the final state.
+     *
+     * @param state the state
+     * @return the times it has been final
+     * @throws IllegalStateException if the state is not in the process
+     */
+    public long finalCount(S state) throws IllegalStateException {
+        return this.statesFinal.get(this.indexOf(state));
+    }
+
+    /**
+     * Returns the times a state has been followed by another one.
+     *
+     * @param from the state before the transition
+     * @param to the state after the transition
+     * @return the times of the transition
+     * @throws IllegalStateException if a state is not in the process
+     */
+    public long transitionCount(S from, S to) throws IllegalStateException {
+        return this.statesConnection.get(this.indexOf(from) * this.states.size() + this.indexOf(to));
+    }
+
+    /**
+     * Returns the distribution of the time spent in a state before moving to
+     * another one, in nanoseconds. The time in the current state of each
+     * object is not included, since it has not finished.
+     *
+     * @param state the state
+     * @return a new histogram with the dwell times of the state
+     * @throws IllegalStateException if the state is not in the process
+     */
+    public LogHistogram dwellTime(S state) throws IllegalStateException {
+        int size = this.states.size();
+        int from = this.indexOf(state);
+        LogHistogram result = new LogHistogram();
+
+        for (int to = 0; to < size; to++) {
+            LogHistogram latency = this.latencies.get(from * size + to);
+            if (latency != null) {
+                synchronized (latency) {
+                    result.merge(latency);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the distribution of the time spent in a state before moving to
+     * another one, in nanoseconds, for the objects that made that transition.
+     *
+     * @param from the state before the transition
+     * @param to the state after the transition
+     * @return a new histogram with the latencies of the transition
+     * @throws IllegalStateException if a state is not in the process
+     */
+    public LogHistogram transitionLatency(S from, S to) throws IllegalStateException {
+        LogHistogram latency = this.latencies.get(this.indexOf(from) * this.states.size() + this.indexOf(to));
+        if (latency == null) {
+            return new LogHistogram();
+        }
+        synchronized (latency) {
+            return latency.copy();
+        }
+    }
+
+    /**
+     * Writes the representation of the process to the specified output: for
+     * each state, the times it has been initial and final, and the times it
+     * has been followed by each other state.
+     *
+     * @param out the output to write to
+     * @throws IOException if the output fails
+     */
+    public void print(Appendable out) throws IOException {
+        int size = this.states.size();
+
+        for (int from = 0; from < size; from++) {
+            out.append(String.valueOf(this.states.get(from)))
+                    .append("(initial ").append(String.valueOf(this.statesBegin.get(from)))
+                    .append(" times, final ").append(String.valueOf(this.statesFinal.get(from))).append(" times):\n");
+
+            for (int to = 0; to < size; to++) {
+                long roadsCount = this.statesConnection.get(from * size + to);
+                if (to != from && roadsCount != 0) {
+                    out.append("  to state ").append(String.valueOf(this.states.get(to)))
+                            .append(": ").append(String.valueOf(roadsCount)).append(" times\n");
+                }
+            }
         }
     }
 
@@ -83,21 +405,12 @@ public class Process<S> {
      */
     @Override
     public String toString() {
-        String buffer = "";
-
-        for (S printedState : this.states) {
-            buffer += printedState
-                    + "(initial " + this.statesBegin.get(printedState)
-                    + " times, final " + this.statesFinal.get(printedState) + " times):\n";
-
-            for (Map.Entry<S, Integer> connections : this.statesConnection.get(printedState).entrySet()) {
-                S roadState = connections.getKey();
-                Integer roadsCount = connections.getValue();
-                if (roadsCount != 0) {
-                    buffer += "  to state " + roadState + ": " + roadsCount + " times\n";
-                }
-            }
+        StringBuilder buffer = new StringBuilder();
+        try {
+            this.print(buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
-        return buffer;
+        return buffer.toString();
     }
 }
@@ -0,0 +1,114 @@
+package Registration;
+
+import java.util.*;
+import ObjectStateTracker.IntermediateValues;
+
+/**
+ * The registrations changed inside the batches of a thread, waiting to be
+ * notified when the outermost batch ends. Each registration is kept once, in
+ * the order it was first changed, with the property that was changed, or
+ * null if several properties were changed. If the outermost batch records the
+ * intermediate states, the values of each registration after each change are
+ * kept too.
+ */
+class NotificationBatch {
+
+    private int depth;
+    private boolean intermediate;
+    private final Map<Registration, String> properties = new IdentityHashMap<>();
+    private final Map<Registration, List<IntermediateValues<Registration>>> changes = new IdentityHashMap<>();
+    private final List<Registration> order = new ArrayList<>();
+
+    /**
+     * Opens a new (maybe nested) batch. A nested batch keeps the choice of
+     * the outermost one.
+     *
+     * @param intermediate true to keep the values after each change, if it
+     * is the outermost batch
+     */
+    void open(boolean intermediate) {
+        if (this.depth == 0) {
+            this.intermediate = intermediate;
+        }
+        this.depth++;
+    }
+
+    /**
+     * Closes the current batch.
+     *
+     * @return true if it was the outermost batch
+     */
+    boolean close() {
+        this.depth--;
+        return this.depth == 0;
+    }
+
+    /**
+     * Returns whether there is an open batch.
+     *
+     * @return true if there is an open batch
+     */
+    boolean isOpen() {
+        return this.depth > 0;
+    }
+
+    /**
+     * Returns whether the batch keeps the values after each change.
+     *
+     * @return true if the intermediate states are recorded
+     */
+    boolean keepsIntermediate() {
+        return this.intermediate;
+    }
+
+    /**
+     * Marks a registration as changed.
+     *
+     * @param registration the changed registration
+     * @param property the changed property, or null if it is unknown
+     * @param values the values after the change, or null if they are not
+     * kept
+     */
+    void add(Registration registration, String property, IntermediateValues<Registration> values) {
+        if (this.properties.containsKey(registration) == false) {
+            this.properties.put(registration, property);
+            this.order.add(registration);
+        } else if (Objects.equals(this.properties.get(registration), property) == false) {
+            this.properties.put(registration, null);
+        }
+
+        if (values != null) {
+            this.changes.computeIfAbsent(registration, changed -> new ArrayList<>()).add(values);
+        }
+    }
+
+    /**
+     * Returns the notifications to send, and empties the batch. Each changed
+     * registration gets one notification with its changed property, preceded
+     * by the values after each of its changes but the last one if they were
+     * kept.
+     *
+     * @return the changed registrations and the argument of each
+     * notification, in the order they were first changed
+     */
+    List<Map.Entry<Registration, Object>> drain() {
+        List<Map.Entry<Registration, Object>> notifications = new ArrayList<>(this.order.size());
+        for (Registration registration : this.order) {
+            List<IntermediateValues<Registration>> kept = this.changes.get(registration);
+            if (kept == null) {
+                notifications.add(new AbstractMap.SimpleEntry<>(registration, this.properties.get(registration)));
+                continue;
+            }
+
+            /* The last change is evaluated on the registration itself */
+            for (IntermediateValues<Registration> values : kept.subList(0, kept.size() - 1)) {
+                notifications.add(new AbstractMap.SimpleEntry<>(registration, values));
+            }
+            notifications.add(new AbstractMap.SimpleEntry<>(registration, kept.get(kept.size() - 1).getProperty()));
+        }
+        this.properties.clear();
+        this.changes.clear();
+        this.order.clear();
+        return notifications;
+    }
+}
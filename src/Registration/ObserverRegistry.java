@@ -0,0 +1,118 @@
+package Registration;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Observer;
+
+/**
+ * Operations on a set of observers kept as a copy-on-write array of weak
+ * references, so an observer that is no longer used elsewhere can be garbage
+ * collected without removing it. The array is never modified: adding or
+ * removing an observer returns a new one without the cleared references, and
+ * the observers to notify are read from the array without locking. The sets
+ * are small, so the linear searches are cheaper than a map.
+ */
+final class ObserverRegistry {
+
+    @SuppressWarnings("unchecked")
+    static final WeakReference<Observer>[] EMPTY = (WeakReference<Observer>[]) new WeakReference<?>[0];
+
+    private ObserverRegistry() {
+    }
+
+    /**
+     * Returns the observers with the specified one added, or the same array
+     * if it is already there.
+     *
+     * @param observers the current observers, or null if there are none
+     * @param observer the observer to add
+     * @return the observers with the new one
+     */
+    static WeakReference<Observer>[] add(WeakReference<Observer>[] observers, Observer observer) {
+        if (contains(observers, observer) == true) {
+            return observers;
+        }
+
+        WeakReference<Observer>[] live = without(observers, null);
+        WeakReference<Observer>[] result = Arrays.copyOf(live, live.length + 1);
+        result[live.length] = new WeakReference<>(observer);
+        return result;
+    }
+
+    /**
+     * Returns the observers without the specified one, or the same array if
+     * it is not there.
+     *
+     * @param observers the current observers, or null if there are none
+     * @param observer the observer to remove
+     * @return the observers without the removed one
+     */
+    static WeakReference<Observer>[] remove(WeakReference<Observer>[] observers, Observer observer) {
+        if (contains(observers, observer) == false) {
+            return observers;
+        }
+        return without(observers, observer);
+    }
+
+    /**
+     * Returns whether an observer is in the array.
+     *
+     * @param observers the observers, or null if there are none
+     * @param observer the observer to search
+     * @return true if the observer is in the array
+     */
+    static boolean contains(WeakReference<Observer>[] observers, Observer observer) {
+        if (observers == null) {
+            return false;
+        }
+        for (WeakReference<Observer> reference : observers) {
+            if (reference.get() == observer) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of live observers in the array.
+     *
+     * @param observers the observers, or null if there are none
+     * @return the number of observers
+     */
+    static int size(WeakReference<Observer>[] observers) {
+        if (observers == null) {
+            return 0;
+        }
+        int count = 0;
+        for (WeakReference<Observer> reference : observers) {
+            if (reference.get() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Copies the live observers except the specified one.
+     *
+     * @param observers the observers, or null if there are none
+     * @param excluded the observer to leave out, or null to only drop the
+     *                 cleared references
+     * @return the copied observers
+     */
+    private static WeakReference<Observer>[] without(WeakReference<Observer>[] observers, Observer excluded) {
+        if (observers == null) {
+            return EMPTY;
+        }
+
+        WeakReference<Observer>[] result = Arrays.copyOf(observers, observers.length);
+        int count = 0;
+        for (WeakReference<Observer> reference : observers) {
+            Observer current = reference.get();
+            if (current != null && current != excluded) {
+                result[count++] = reference;
+            }
+        }
+        return (count == 0) ? EMPTY : Arrays.copyOf(result, count);
+    }
+}
@@ -1,22 +1,47 @@
 package Registration;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.lang.ref.WeakReference;
+import java.util.Map;
 import java.util.Observable;
 import java.util.Observer;
+import ObjectStateTracker.IntermediateValues;
 
 /**
  * Represents a registration for an event or activity. This class extends the
- * Observable class to support the Observer pattern.
+ * Observable class to support the Observer pattern. A registration can be
+ * changed from several threads at the same time.
  */
 public class Registration extends Observable {
 
-    private String name, affiliation;
+    /**
+     * Name of the amount paid, sent to the observers when it changes.
+     */
+    public static final String PROPERTY_AMOUNT_PAYED = "amountPayed";
+
+    /**
+     * Name of the affiliation, sent to the observers when it changes.
+     */
+    public static final String PROPERTY_AFFILIATION = "affiliation";
+
+    /**
+     * Name of the validation status, sent to the observers when it changes.
+     */
+    public static final String PROPERTY_VALIDATED = "validated";
+
+    private String name;
+    private volatile String affiliation;
     private RegistrationKind kind;
-    private int amountPayed;
-    private boolean validated;
+    private volatile int amountPayed;
+    private volatile boolean validated;
+
+    /* Observers of this registration, null until the first one is added */
+    private volatile WeakReference<Observer>[] instanceObservers;
 
-    private static List<Observer> observers = new ArrayList<>();
+    /* Observers of every registration */
+    private static volatile WeakReference<Observer>[] observers = ObserverRegistry.EMPTY;
+
+    /* Registrations changed inside the batch of each thread */
+    private static final ThreadLocal<NotificationBatch> batches = ThreadLocal.withInitial(NotificationBatch::new);
 
     /**
      * Constructs a new Registration object with the given name and kind.
@@ -36,8 +61,10 @@ public class Registration extends Observable {
      * @param amount The amount to be paid.
      */
     public void pay(double amount) {
-        this.amountPayed += amount;
-        updateObserver(this);
+        synchronized (this) {
+            this.amountPayed += amount;
+        }
+        updateObserver(this, PROPERTY_AMOUNT_PAYED);
     }
 
     /**
@@ -58,6 +85,15 @@ public class Registration extends Observable {
         return this.kind.getPrice();
     }
 
+    /**
+     * Returns the kind of this registration.
+     *
+     * @return The kind of registration.
+     */
+    public RegistrationKind getKind() {
+        return this.kind;
+    }
+
     /**
      * Returns the affiliation of the registrant.
      *
@@ -74,7 +110,7 @@ public class Registration extends Observable {
      */
     public void setAffiliation(String aff) {
         this.affiliation = aff;
-        updateObserver(this);
+        updateObserver(this, PROPERTY_AFFILIATION);
     }
 
     /**
@@ -102,25 +138,183 @@ public class Registration extends Observable {
      */
     public void setValidated(boolean b) {
         this.validated = b;
-        updateObserver(this);
+        updateObserver(this, PROPERTY_VALIDATED);
+    }
+
+    /**
+     * Returns a copy of the values of this registration, with no observers,
+     * to evaluate the state it has now after it has changed again.
+     *
+     * @return The copy of the registration.
+     */
+    private Registration copyValues() {
+        Registration copy = new Registration(this.name, this.kind);
+        copy.affiliation = this.affiliation;
+        copy.amountPayed = this.amountPayed;
+        copy.validated = this.validated;
+        return copy;
     }
 
     /*________________________________________________________________*/
-    private static void updateObserver(Observable o) {
-        for (Observer current : observers) {
-            current.update(o, null);
+    /**
+     * Notifies a change to the observers. The name of the changed property is
+     * sent as argument, or null if several properties have changed.
+     *
+     * @param r The changed registration.
+     * @param property The name of the changed property.
+     */
+    private static void updateObserver(Registration r, String property) {
+        /* Inside a batch, the notification waits until the batch ends */
+        NotificationBatch batch = batches.get();
+        if (batch.isOpen() == true) {
+            batch.add(r, property, (batch.keepsIntermediate() == true) ? new IntermediateValues<>(r.copyValues(), property) : null);
+            return;
+        }
+        deliver(r, property);
+    }
+
+    /**
+     * Delivers a notification to the observers.
+     *
+     * @param r The changed registration.
+     * @param arg The argument of the notification.
+     */
+    private static void deliver(Registration r, Object arg) {
+        /* First the observers of the registration, then the ones of every registration */
+        WeakReference<Observer>[] own = r.instanceObservers;
+        if (own != null) {
+            for (WeakReference<Observer> reference : own) {
+                Observer current = reference.get();
+                if (current != null) {
+                    current.update(r, arg);
+                }
+            }
+        }
+        for (WeakReference<Observer> reference : observers) {
+            Observer current = reference.get();
+            if (current != null && ObserverRegistry.contains(own, current) == false) {
+                current.update(r, arg);
+            }
+        }
+    }
+
+    /**
+     * Runs the specified changes as a batch, dropping the intermediate
+     * states. The notifications of the registrations changed inside the
+     * batch are delayed until it ends, and then each changed registration is
+     * notified once, so the observers only see the final values and not the
+     * intermediate states. Nested batches are joined to the outermost one.
+     * The batch is per thread.
+     *
+     * @param changes The changes to run.
+     */
+    public static void batch(Runnable changes) {
+        batch(changes, false);
+    }
+
+    /**
+     * Runs the specified changes as a batch, dropping or recording the
+     * intermediate states. The notifications are delayed until the batch
+     * ends. If the intermediate states are dropped, each changed
+     * registration is notified once, with its final values. If they are
+     * recorded, a copy of the values of the registration is kept after each
+     * change, and when the batch ends it is notified once per change, in
+     * order: the copies are sent as {@link IntermediateValues}, so the
+     * trackers record every state it went through (with the time the batch
+     * ends), and the last change is notified as usual. Nested batches are
+     * joined to the outermost one, and keep its choice. The batch is per
+     * thread.
+     *
+     * @param changes The changes to run.
+     * @param intermediateStates True to record the intermediate states.
+     */
+    public static void batch(Runnable changes, boolean intermediateStates) {
+        NotificationBatch batch = batches.get();
+
+        batch.open(intermediateStates);
+        try {
+            changes.run();
+        } finally {
+            /* The outermost batch notifies the changes, even if they failed */
+            if (batch.close() == true) {
+                for (Map.Entry<Registration, Object> changed : batch.drain()) {
+                    deliver(changed.getKey(), changed.getValue());
+                }
+            }
         }
     }
 
     /**
-     * Adds the specified observer to the list of observers.
+     * Adds the specified observer to the observers of every registration. The
+     * observer is only weakly referenced, so it does not need to be removed
+     * to be garbage collected. A tracker does not need it to follow the
+     * registrations it tracks, since it observes each of them.
      *
      * @param observer The observer to be added.
      */
     public static void withTracker(Observer observer) {
-        if (observers.contains(observer) == false) {
-            observers.add(observer);
+        synchronized (Registration.class) {
+            observers = ObserverRegistry.add(observers, observer);
+        }
+    }
+
+    /**
+     * Removes the specified observer from the observers of every
+     * registration.
+     *
+     * @param observer The observer to be removed.
+     */
+    public static void withoutTracker(Observer observer) {
+        synchronized (Registration.class) {
+            observers = ObserverRegistry.remove(observers, observer);
+        }
+    }
+
+    /**
+     * Adds an observer to this registration. The observer is only weakly
+     * referenced, so it does not need to be removed to be garbage collected.
+     *
+     * @param observer The observer to be added.
+     */
+    @Override
+    public void addObserver(Observer observer) {
+        if (observer == null) {
+            throw new NullPointerException();
         }
+
+        synchronized (this) {
+            this.instanceObservers = ObserverRegistry.add(this.instanceObservers, observer);
+        }
+    }
+
+    /**
+     * Removes an observer from this registration.
+     *
+     * @param observer The observer to be removed.
+     */
+    @Override
+    public void deleteObserver(Observer observer) {
+        synchronized (this) {
+            this.instanceObservers = ObserverRegistry.remove(this.instanceObservers, observer);
+        }
+    }
+
+    /**
+     * Removes all the observers of this registration.
+     */
+    @Override
+    public void deleteObservers() {
+        this.instanceObservers = null;
+    }
+
+    /**
+     * Returns the number of live observers of this registration.
+     *
+     * @return The number of observers.
+     */
+    @Override
+    public int countObservers() {
+        return ObserverRegistry.size(this.instanceObservers);
     }
 
     /*________________________________________________________________*/
@@ -0,0 +1,525 @@
+package Registration;
+
+import ObjectStateTracker.StateRules;
+import java.util.*;
+import java.util.function.Predicate;
+
+/**
+ * A columnar store of registrations. Instead of an object per registration,
+ * each field is kept in its own array indexed by the row of the registration:
+ * the ordinal of the kind, the amount paid, the validation flag and the
+ * identifier of the affiliation (0 for no affiliation). The rows do not
+ * notify their changes; their states are classified again, column by column,
+ * by {@link #updateStates()}.
+ *
+ * The states are given by {@link StateRules} over the conditions of
+ * {@link Condition}, so the same rules can be given to a tracker of the
+ * registrations with {@code withRules}; by default they are the rules of the
+ * registration process of {@link #registrationRules()}. The rules are
+ * compiled into the state of each combination of the conditions, and each
+ * row is classified by computing its conditions from the columns and looking
+ * up the state of its combination. The rows are classified in batches that
+ * fit in the cache, with the vector API (module jdk.incubator.vector) when it
+ * is present and the processor has vectors of 8 ints or more, and row by row
+ * otherwise.
+ */
+public class RegistrationTable {
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    /* Rows classified and counted at a time */
+    private static final int BATCH_ROWS = 4096;
+
+    /* Price of each kind, by ordinal */
+    static final int[] PRICES = Arrays.stream(RegistrationKind.values()).mapToInt(kind -> (int) kind.getPrice()).toArray();
+
+    private static final RegistrationKind[] KINDS = RegistrationKind.values();
+    private static final RegistrationState[] STATES = RegistrationState.values();
+    private static final Condition[] CONDITIONS = Condition.values();
+
+    /* Bit of each condition in a combination of the conditions; the validation flag (0 or 1) is shifted to its bit */
+    static final int FULLY_PAYED = 1 << Condition.FULLY_PAYED.ordinal();
+    static final int NOT_PAYED = 1 << Condition.NOT_PAYED.ordinal();
+    static final int VALIDATED_SHIFT = Condition.VALIDATED.ordinal();
+    static final int AFFILIATED = 1 << Condition.AFFILIATED.ordinal();
+    private static final boolean VECTORS = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent() == true
+            && RegistrationVectors.supported() == true;
+
+    /* Columns of the registrations, and the state of each one after the last classification */
+    private byte[] kinds = new byte[INITIAL_CAPACITY];
+    private int[] amounts = new int[INITIAL_CAPACITY];
+    private byte[] validated = new byte[INITIAL_CAPACITY];
+    private int[] affiliations = new int[INITIAL_CAPACITY];
+    private byte[] states = new byte[INITIAL_CAPACITY];
+    private int size;
+
+    /* Rows of each state, indexed by ordinal */
+    private final int[] counts = new int[STATES.length];
+
+    /* Affiliations by identifier, from 1 */
+    private final List<String> affiliationNames = new ArrayList<>(Collections.singletonList(null));
+    private final Map<String, Integer> affiliationIds = new HashMap<>();
+
+    /* Ordinal of the state of each combination of the conditions, with the bit of each condition by its ordinal */
+    private final int[] lookup = new int[1 << CONDITIONS.length];
+
+    private boolean vectors = VECTORS;
+    private int vectorRows;
+
+    /**
+     * The conditions of the rows that the rules of a table can use. Each one
+     * is computed from the columns of the table, and its function checks the
+     * same condition on a registration.
+     */
+    public enum Condition {
+        /** The amount paid is the price of the kind */
+        FULLY_PAYED("fullyPayed", r -> r.getAmountPayed() == r.getTotalAmount()),
+        /** Nothing is paid */
+        NOT_PAYED("notPayed", r -> r.getAmountPayed() == 0),
+        /** The registration is validated */
+        VALIDATED("validated", Registration::getValidated),
+        /** The registration has an affiliation */
+        AFFILIATED("affiliated", r -> r.getAffiliation() != null);
+
+        private final String conditionName;
+        private final Predicate<Registration> predicate;
+
+        Condition(String conditionName, Predicate<Registration> predicate) {
+            this.conditionName = conditionName;
+            this.predicate = predicate;
+        }
+
+        /**
+         * Returns the name of the condition in the rules of
+         * {@link RegistrationTable#newRules()}.
+         *
+         * @return the name of the condition
+         */
+        public String getConditionName() {
+            return this.conditionName;
+        }
+
+        /**
+         * Returns the function that checks the condition on a registration.
+         *
+         * @return the function of the condition
+         */
+        public Predicate<Registration> getPredicate() {
+            return this.predicate;
+        }
+
+        /**
+         * Returns the condition of a function.
+         *
+         * @param predicate the function of the condition
+         * @return the condition
+         * @throws IllegalStateException if the function is not the one of a
+         * condition
+         */
+        private static Condition of(Predicate<Registration> predicate) throws IllegalStateException {
+            for (Condition condition : CONDITIONS) {
+                if (condition.predicate == predicate) {
+                    return condition;
+                }
+            }
+            throw new IllegalStateException();
+        }
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Creates a table classified with the rules of the registration process
+     * of {@link #registrationRules()}.
+     */
+    public RegistrationTable() {
+        this(registrationRules());
+    }
+
+    /**
+     * Creates a table classified with the specified rules. The rules are
+     * compiled when the table is created: later changes of the rules are not
+     * seen by the table.
+     *
+     * @param rules the rules, over the conditions of {@link #newRules()}
+     * @throws IllegalStateException if a rule uses a condition that is not
+     * one of {@link Condition}, or there is no default state
+     */
+    public RegistrationTable(StateRules<Registration, RegistrationState> rules) throws IllegalStateException {
+        if (rules.getDefaultState() == null) {
+            throw new IllegalStateException();
+        }
+
+        for (int combination = 0; combination < this.lookup.length; combination++) {
+            RegistrationState state = rules.getDefaultState();
+            for (int rule = 0; rule < rules.getRuleCount(); rule++) {
+                if (meets(rules, rule, combination) == true) {
+                    state = rules.getRuleState(rule);
+                    break;
+                }
+            }
+            this.lookup[combination] = state.ordinal();
+        }
+    }
+
+    /**
+     * Returns whether a combination of the conditions meets a rule.
+     *
+     * @param rules the rules
+     * @param rule the position of the rule
+     * @param combination the conditions met, with the bit of each condition
+     * by its ordinal
+     * @return true if the combination meets all the conditions of the rule
+     * @throws IllegalStateException if the rule uses a condition that is not
+     * one of {@link Condition}
+     */
+    private static boolean meets(StateRules<Registration, RegistrationState> rules, int rule, int combination) throws IllegalStateException {
+        for (String literal : rules.getRuleLiterals(rule)) {
+            boolean negated = literal.startsWith("!");
+            Condition condition = Condition.of(rules.getCondition(negated ? literal.substring(1) : literal));
+            if ((((combination >> condition.ordinal()) & 1) == 1) == negated) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates rules with the conditions of {@link Condition} and no rule
+     * yet. The rules can be given both to a table and to a tracker of the
+     * registrations.
+     *
+     * @return the rules with the conditions of the table
+     */
+    public static StateRules<Registration, RegistrationState> newRules() {
+        StateRules<Registration, RegistrationState> rules = new StateRules<>();
+        for (Condition condition : CONDITIONS) {
+            rules.condition(condition.getConditionName(), condition.getPredicate());
+        }
+        return rules;
+    }
+
+    /**
+     * Creates the rules of the registration process, checked in the order of
+     * its predicates: PAYED if it is fully paid and not validated, STARTED or
+     * FILLED if it is not validated (without or with affiliation), VALIDATED
+     * if it is validated and nothing is paid, FINISHED if it is validated and
+     * fully paid, and REJECTED otherwise.
+     *
+     * @return the rules of the registration process
+     */
+    public static StateRules<Registration, RegistrationState> registrationRules() {
+        return newRules()
+                .rule(RegistrationState.PAYED, "fullyPayed", "!validated")
+                .rule(RegistrationState.STARTED, "!affiliated", "!validated")
+                .rule(RegistrationState.FILLED, "affiliated", "!validated")
+                .rule(RegistrationState.VALIDATED, "notPayed", "validated")
+                .rule(RegistrationState.FINISHED, "fullyPayed", "validated")
+                .elseState(RegistrationState.REJECTED);
+    }
+
+    /**
+     * Returns whether the vector API can be used to classify the rows: the
+     * module jdk.incubator.vector is present (it is added with
+     * {@code --add-modules jdk.incubator.vector}) and the processor has
+     * vectors of 8 ints or more.
+     *
+     * @return true if the rows can be classified with vectors
+     */
+    public static boolean vectorsAvailable() {
+        return VECTORS;
+    }
+
+    /**
+     * Sets whether the rows are classified with the vector API, if it is
+     * available. It is used by default when it is available.
+     *
+     * @param vectors false to always classify the rows one by one
+     * @return the RegistrationTable instance
+     */
+    public RegistrationTable withVectors(boolean vectors) {
+        this.vectors = vectors && VECTORS;
+        return this;
+    }
+
+    /**
+     * Adds a new row with the specified values, and classifies its state.
+     *
+     * @param kind the ordinal of the kind
+     * @param amount the amount paid
+     * @param validated the validation flag (0 or 1)
+     * @param affiliation the identifier of the affiliation (0 for none)
+     * @return the row of the registration
+     */
+    private int add(byte kind, int amount, byte validated, int affiliation) {
+        if (this.size == this.kinds.length) {
+            int capacity = this.size * 2;
+            this.kinds = Arrays.copyOf(this.kinds, capacity);
+            this.amounts = Arrays.copyOf(this.amounts, capacity);
+            this.validated = Arrays.copyOf(this.validated, capacity);
+            this.affiliations = Arrays.copyOf(this.affiliations, capacity);
+            this.states = Arrays.copyOf(this.states, capacity);
+        }
+
+        int row = this.size++;
+        this.kinds[row] = kind;
+        this.amounts[row] = amount;
+        this.validated[row] = validated;
+        this.affiliations[row] = affiliation;
+        classify(this.kinds, this.amounts, this.validated, this.affiliations, row, row + 1, this.lookup, this.states);
+        this.counts[this.states[row]]++;
+        return row;
+    }
+
+    /**
+     * Adds a new row, with nothing paid, not validated and without
+     * affiliation. Its state is classified when it is added.
+     *
+     * @param kind the kind of the registration
+     * @return the row of the registration
+     */
+    public int add(RegistrationKind kind) {
+        return this.add((byte) kind.ordinal(), 0, (byte) 0, 0);
+    }
+
+    /**
+     * Adds a new row with the current values of a registration. The row is
+     * not linked to the registration: later changes of one of them are not
+     * seen in the other. Its state is classified when it is added.
+     *
+     * @param registration the registration to copy
+     * @return the row of the registration
+     */
+    public int add(Registration registration) {
+        return this.add((byte) registration.getKind().ordinal(), (int) registration.getAmountPayed(),
+                (byte) ((registration.getValidated() == true) ? 1 : 0), this.affiliationId(registration.getAffiliation()));
+    }
+
+    /**
+     * Returns the identifier of an affiliation, giving it a new one the first
+     * time it is seen.
+     *
+     * @param affiliation the affiliation, or null
+     * @return the identifier of the affiliation, or 0 if it is null
+     */
+    private int affiliationId(String affiliation) {
+        if (affiliation == null) {
+            return 0;
+        }
+        return this.affiliationIds.computeIfAbsent(affiliation, name -> {
+            this.affiliationNames.add(name);
+            return this.affiliationNames.size() - 1;
+        });
+    }
+
+    /**
+     * Checks that a row is in the table.
+     *
+     * @param row the row
+     * @throws IndexOutOfBoundsException if the row is not in the table
+     */
+    private void check(int row) throws IndexOutOfBoundsException {
+        Objects.checkIndex(row, this.size);
+    }
+
+    /**
+     * Adds the specified amount to the amount paid of a row.
+     *
+     * @param row the row of the registration
+     * @param amount the amount to be paid
+     * @throws IndexOutOfBoundsException if the row is not in the table
+     */
+    public void pay(int row, double amount) throws IndexOutOfBoundsException {
+        this.check(row);
+        this.amounts[row] += amount;
+    }
+
+    /**
+     * Sets the affiliation of a row.
+     *
+     * @param row the row of the registration
+     * @param affiliation the affiliation, or null
+     * @throws IndexOutOfBoundsException if the row is not in the table
+     */
+    public void setAffiliation(int row, String affiliation) throws IndexOutOfBoundsException {
+        this.check(row);
+        this.affiliations[row] = this.affiliationId(affiliation);
+    }
+
+    /**
+     * Sets the validation status of a row.
+     *
+     * @param row the row of the registration
+     * @param validated the validation status
+     * @throws IndexOutOfBoundsException if the row is not in the table
+     */
+    public void setValidated(int row, boolean validated) throws IndexOutOfBoundsException {
+        this.check(row);
+        this.validated[row] = (byte) ((validated == true) ? 1 : 0);
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Classifies a range of rows, one by one: the conditions of each row are
+     * computed from the columns, and its state is the one of their
+     * combination.
+     *
+     * @param kinds the ordinals of the kinds
+     * @param amounts the amounts paid
+     * @param validated the validation flags (0 or 1)
+     * @param affiliations the identifiers of the affiliations (0 for none)
+     * @param from the first row, inclusive
+     * @param to the last row, exclusive
+     * @param lookup the ordinal of the state of each combination of the
+     * conditions
+     * @param states the ordinals of the states, written for each row
+     */
+    static void classify(byte[] kinds, int[] amounts, byte[] validated, int[] affiliations, int from, int to, int[] lookup, byte[] states) {
+        for (int row = from; row < to; row++) {
+            int amount = amounts[row];
+            int combination = ((amount == PRICES[kinds[row]]) ? FULLY_PAYED : 0)
+                    | ((amount == 0) ? NOT_PAYED : 0)
+                    | (validated[row] << VALIDATED_SHIFT)
+                    | ((affiliations[row] != 0) ? AFFILIATED : 0);
+            states[row] = (byte) lookup[combination];
+        }
+    }
+
+    /**
+     * Classifies all the rows again, and counts the rows of each state. The
+     * rows are classified in batches, each one counted while it is still in
+     * the cache.
+     */
+    public void updateStates() {
+        Arrays.fill(this.counts, 0);
+        this.vectorRows = 0;
+
+        for (int from = 0; from < this.size; from += BATCH_ROWS) {
+            int to = Math.min(from + BATCH_ROWS, this.size);
+            int row = from;
+
+            /* The vectors classify the rows of whole vectors, and the rest are classified one by one */
+            if (this.vectors == true) {
+                row = RegistrationVectors.classify(this.kinds, this.amounts, this.validated, this.affiliations, from, to, this.lookup, this.states);
+                this.vectorRows += row - from;
+            }
+            classify(this.kinds, this.amounts, this.validated, this.affiliations, row, to, this.lookup, this.states);
+
+            for (int i = from; i < to; i++) {
+                this.counts[this.states[i]]++;
+            }
+        }
+    }
+
+    /**
+     * Returns the number of rows classified with the vector API by the last
+     * call to {@link #updateStates()}. It is 0 if the vectors are not used,
+     * and the rows that do not fill a whole vector are always classified one
+     * by one.
+     *
+     * @return the number of rows classified with vectors
+     */
+    public int getVectorRows() {
+        return this.vectorRows;
+    }
+
+    /*____________________________________________________________________*/
+    /**
+     * Returns the number of rows of the table.
+     *
+     * @return the number of rows
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Returns the kind of a row.
+     *
+     * @param row the row of the registration
+     * @return the kind of the registration
+     * @throws IndexOutOfBoundsException if the row is not in the table
+     */
+    public RegistrationKind getKind(int row) throws IndexOutOfBoundsException {
+        this.check(row);
+        return KINDS[this.kinds[row]];
+    }
+
+    /**
+     * Returns the amount paid of a row.
+     *
+     * @param row the row of the registration
+     * @return the amount paid
+     * @throws IndexOutOfBoundsException if the row is not in the table
+     */
+    public double getAmountPayed(int row) throws IndexOutOfBoundsException {
+        this.check(row);
+        return this.amounts[row];
+    }
+
+    /**
+     * Returns the affiliation of a row.
+     *
+     * @param row the row of the registration
+     * @return the affiliation, or null
+     * @throws IndexOutOfBoundsException if the row is not in the table
+     */
+    public String getAffiliation(int row) throws IndexOutOfBoundsException {
+        this.check(row);
+        return this.affiliationNames.get(this.affiliations[row]);
+    }
+
+    /**
+     * Returns the validation status of a row.
+     *
+     * @param row the row of the registration
+     * @return true if the registration is validated
+     * @throws IndexOutOfBoundsException if the row is not in the table
+     */
+    public boolean getValidated(int row) throws IndexOutOfBoundsException {
+        this.check(row);
+        return this.validated[row] != 0;
+    }
+
+    /**
+     * Returns the state of a row when the states were last classified, or
+     * when it was added.
+     *
+     * @param row the row of the registration
+     * @return the state of the registration
+     * @throws IndexOutOfBoundsException if the row is not in the table
+     */
+    public RegistrationState stateOf(int row) throws IndexOutOfBoundsException {
+        this.check(row);
+        return STATES[this.states[row]];
+    }
+
+    /**
+     * Returns the number of rows in the specified state when the states were
+     * last classified.
+     *
+     * @param state the state to count
+     * @return the number of rows in the state
+     */
+    public int countIn(RegistrationState state) {
+        return this.counts[state.ordinal()];
+    }
+
+    /**
+     * Returns a string representation of the table: the number of rows of
+     * each state.
+     *
+     * @return a string representation of the table
+     */
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder("{");
+
+        for (int ordinal = 0; ordinal < STATES.length; ordinal++) {
+            if (ordinal > 0) {
+                buffer.append(", ");
+            }
+            buffer.append(STATES[ordinal]).append("=").append(this.counts[ordinal]);
+        }
+        return buffer.append("}").toString();
+    }
+}
@@ -0,0 +1,87 @@
+package Registration;
+
+import jdk.incubator.vector.*;
+
+/**
+ * The classification of the rows of a {@link RegistrationTable} with the
+ * vector API. Each step classifies the rows of a whole vector of ints: the
+ * byte columns are loaded in vectors with the same number of lanes, the
+ * conditions are computed as masks over all the lanes and added as the bits
+ * of the combination of each lane, and the states of the combinations are
+ * looked up with a rearrangement of the states of the table, as the scalar
+ * classification looks them up in the array.
+ *
+ * This class is only loaded when the module jdk.incubator.vector is present.
+ */
+final class RegistrationVectors {
+
+    /* Vectors of 16 ints on processors with 512-bit vectors, of 8 ints otherwise */
+    private static final VectorSpecies<Integer> INTS = (IntVector.SPECIES_PREFERRED.length() >= 16) ? IntVector.SPECIES_512 : IntVector.SPECIES_256;
+    private static final VectorSpecies<Byte> BYTES = (INTS.length() == 16) ? ByteVector.SPECIES_128 : ByteVector.SPECIES_64;
+
+    private RegistrationVectors() {
+    }
+
+    /**
+     * Returns whether the processor has vectors of 8 ints or more. With
+     * shorter vectors the API would emulate them, slower than the scalar
+     * classification.
+     *
+     * @return true if the vectors can be used
+     */
+    static boolean supported() {
+        return IntVector.SPECIES_PREFERRED.length() >= 8;
+    }
+
+    /**
+     * Classifies the rows of a range that fill whole vectors.
+     *
+     * @param kinds the ordinals of the kinds
+     * @param amounts the amounts paid
+     * @param validated the validation flags (0 or 1)
+     * @param affiliations the identifiers of the affiliations (0 for none)
+     * @param from the first row, inclusive
+     * @param to the last row, exclusive
+     * @param lookup the ordinal of the state of each combination of the
+     * conditions, 16 combinations
+     * @param states the ordinals of the states, written for each row
+     * @return the first row not classified, to be classified one by one
+     */
+    static int classify(byte[] kinds, int[] amounts, byte[] validated, int[] affiliations, int from, int to, int[] lookup, byte[] states) {
+        int[] prices = RegistrationTable.PRICES;
+        int row = from;
+
+        /* The states of the combinations from 8 on are in the second vector when there are only 8 lanes */
+        IntVector low = IntVector.fromArray(INTS, lookup, 0);
+        IntVector high = (INTS.length() < lookup.length) ? IntVector.fromArray(INTS, lookup, INTS.length()) : low;
+        IntVector none = IntVector.zero(INTS);
+
+        for (int bound = from + INTS.loopBound(to - from); row < bound; row += INTS.length()) {
+            IntVector kind = (IntVector) ByteVector.fromArray(BYTES, kinds, row).convertShape(VectorOperators.B2I, INTS, 0);
+            IntVector amount = IntVector.fromArray(INTS, amounts, row);
+
+            /* The price of the kind of each lane */
+            IntVector price = IntVector.broadcast(INTS, prices[0]);
+            for (int ordinal = 1; ordinal < prices.length; ordinal++) {
+                price = price.blend(prices[ordinal], kind.eq(ordinal));
+            }
+
+            VectorMask<Integer> isValidated = ByteVector.fromArray(BYTES, validated, row).compare(VectorOperators.NE, (byte) 0).cast(INTS);
+            VectorMask<Integer> affiliated = IntVector.fromArray(INTS, affiliations, row).compare(VectorOperators.NE, 0);
+
+            /* The bits of the conditions met by each lane */
+            IntVector combination = none.blend(RegistrationTable.FULLY_PAYED, amount.eq(price))
+                    .or(none.blend(RegistrationTable.NOT_PAYED, amount.eq(0)))
+                    .or(none.blend(1 << RegistrationTable.VALIDATED_SHIFT, isValidated))
+                    .or(none.blend(RegistrationTable.AFFILIATED, affiliated));
+
+            VectorShuffle<Integer> lanes = combination.and(INTS.length() - 1).toShuffle();
+            IntVector state = low.rearrange(lanes);
+            if (high != low) {
+                state = state.blend(high.rearrange(lanes), combination.compare(VectorOperators.GE, INTS.length()));
+            }
+            ((ByteVector) state.convertShape(VectorOperators.I2B, BYTES, 0)).intoArray(states, row);
+        }
+        return row;
+    }
+}
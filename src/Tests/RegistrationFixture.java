@@ -0,0 +1,60 @@
+package Tests;
+
+import java.util.*;
+import java.util.function.Predicate;
+import Registration.*;
+import static Registration.RegistrationState.*;
+import ObjectStateTracker.*;
+
+/* The predicates of the registration process, shared by the testers that build their own trackers and by the benchmarks */
+public class RegistrationFixture {
+
+    /* Predicates in the order they are checked, and the properties each one reads */
+    private static final Map<RegistrationState, Predicate<Registration>> PREDICATES = new LinkedHashMap<>();
+    private static final Map<RegistrationState, String[]> PROPERTIES = new EnumMap<>(RegistrationState.class);
+
+    static {
+        PREDICATES.put(PAYED, r -> r.getAmountPayed() == r.getTotalAmount() && !r.getValidated());
+        PREDICATES.put(STARTED, r -> r.getAffiliation() == null && !r.getValidated());
+        PREDICATES.put(FILLED, r -> r.getAffiliation() != null && !r.getValidated());
+        PREDICATES.put(VALIDATED, r -> r.getAmountPayed() == 0 && r.getValidated());
+        PREDICATES.put(FINISHED, r -> r.getAmountPayed() == r.getTotalAmount() && r.getValidated());
+
+        String[] payment = {Registration.PROPERTY_AMOUNT_PAYED, Registration.PROPERTY_VALIDATED};
+        String[] affiliation = {Registration.PROPERTY_AFFILIATION, Registration.PROPERTY_VALIDATED};
+        PROPERTIES.put(PAYED, payment);
+        PROPERTIES.put(STARTED, affiliation);
+        PROPERTIES.put(FILLED, affiliation);
+        PROPERTIES.put(VALIDATED, payment);
+        PROPERTIES.put(FINISHED, payment);
+    }
+
+    private RegistrationFixture() {
+    }
+
+    public static ObjectStateTracker<Registration, RegistrationState> newTracker() {
+        return withRegistrationStates(new ObjectStateTracker<>(RegistrationState.values()));
+    }
+
+    public static <T extends ObjectStateTracker<Registration, RegistrationState>> T withRegistrationStates(T tracker) {
+        return withRegistrationStates(tracker, false);
+    }
+
+    /* With dependencies, each predicate declares the properties it reads */
+    public static <T extends ObjectStateTracker<Registration, RegistrationState>> T withRegistrationStates(T tracker, boolean dependencies) {
+        for (Map.Entry<RegistrationState, Predicate<Registration>> entry : PREDICATES.entrySet()) {
+            if (dependencies == true) {
+                tracker.withState(entry.getKey(), entry.getValue(), PROPERTIES.get(entry.getKey()));
+            } else {
+                tracker.withState(entry.getKey(), entry.getValue());
+            }
+        }
+        tracker.elseState(REJECTED);
+        return tracker;
+    }
+
+    public static EnumStateTracker<Registration, RegistrationState> withRegistrationStates(EnumStateTracker<Registration, RegistrationState> tracker) {
+        PREDICATES.forEach((state, predicate) -> tracker.withState(state, predicate));
+        return tracker.elseState(REJECTED);
+    }
+}
@@ -0,0 +1,23 @@
+package Tests;
+
+import java.util.concurrent.TimeUnit;
+import ObjectStateTracker.*;
+
+public class TesterAsyncObserver extends TesterObserver {
+
+    public static void main(String[] args) {
+        TesterAsyncObserver tsc = new TesterAsyncObserver();
+        tsc.createRegistrations();
+        try (AsyncNotifier notifier = new AsyncNotifier(tsc.regState, 1024, Backpressure.COALESCE)) {
+            tsc.regState.withObserver(notifier);
+            System.out.println(tsc.regState);
+            tsc.changeRegistrations();
+            notifier.awaitQuiescence(); // the changes are delivered by the notifier thread
+            System.out.println(tsc.regState);
+            System.out.println("Delivered: " + notifier.delivered() + ", queued: " + notifier.queueDepth()
+                    + ", max lag under 1s: " + (notifier.maxLag(TimeUnit.SECONDS) < 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package Tests;
+
+import java.util.*;
+import Registration.*;
+import static Registration.RegistrationKind.*;
+
+public class TesterBatch extends TesterStateChanges {
+
+    public static void main(String[] args) {
+        TesterBatch tsc = new TesterBatch();
+        tsc.createRegistrations();
+        Registration.withTracker(tsc.regState);
+        tsc.changeRegistrations();
+        System.out.println(tsc.regState);
+        System.out.println(tsc.lisaMartin + ": " + tsc.regState.trajectory(tsc.lisaMartin).size() + " states");
+
+        /* The same changes, recording the intermediate states */
+        Registration.batch(() -> {
+            tsc.johnDoe.setAffiliation("Arkham College"); // filled
+            tsc.johnDoe.setValidated(true); // validated
+            tsc.johnDoe.pay(STUDENT.getPrice()); // finished
+        }, true);
+        List<RegistrationState> states = new ArrayList<>();
+        tsc.regState.trajectory(tsc.johnDoe).forEach(states::add);
+        System.out.println(tsc.johnDoe + ": " + states.size() + " states " + states);
+
+        /* A nested batch keeps the choice of the outermost one */
+        Registration.batch(() -> Registration.batch(() -> {
+            tsc.annSmith.setValidated(true); // would be validated
+            tsc.annSmith.pay(FULL.getPrice()); // finished
+        }, true));
+        System.out.println(tsc.annSmith + ": " + tsc.regState.trajectory(tsc.annSmith).size() + " states");
+    }
+
+    @Override
+    protected void changeRegistrations() {
+        Registration.batch(() -> {
+            this.lisaMartin.setAffiliation("Arkham College"); // would be filled
+            this.lisaMartin.setValidated(true); // would be validated
+            this.lisaMartin.pay(MEMBER.getPrice()); // finished, the only state seen
+        });
+    }
+}
@@ -0,0 +1,42 @@
+package Tests;
+
+import java.io.*;
+import java.util.*;
+import ObjectStateTracker.*;
+import Registration.*;
+
+public class TesterCheckpoint extends TesterManualClock {
+
+    public static void main(String[] args) {
+        TesterCheckpoint tsc = new TesterCheckpoint();
+        tsc.createRegistrations();
+        tsc.changeRegistrations();
+        List<Registration> registrations = List.of(tsc.annSmith, tsc.johnDoe, tsc.lisaMartin);
+
+        /* The checkpoint of the tracker, with the position of each registration as identifier */
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ObjectStateTracker<Registration, RegistrationState> restored = tsc.newTracker();
+        try {
+            tsc.regState.checkpoint(out, registrations::indexOf);
+            restored.restore(new ByteArrayInputStream(out.toByteArray()), id -> registrations.get((int) id));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        /* The same states, members and timestamps, without checking the functions */
+        System.out.println(tsc.regState);
+        System.out.println(restored);
+        for (Registration r : registrations) {
+            Trajectory<RegistrationState> trajectory = restored.trajectory(r);
+            StringBuilder times = new StringBuilder(r + ":");
+            for (int i = 0; i < trajectory.size(); i++) {
+                times.append(' ').append(trajectory.get(i)).append('@').append(trajectory.epochNanosAt(i));
+            }
+            System.out.println(times);
+        }
+
+        /* The restored tracker goes on following the registrations */
+        tsc.annSmith.setValidated(true);
+        System.out.println(restored.stateOf(tsc.annSmith));
+    }
+}
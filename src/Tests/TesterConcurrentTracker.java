@@ -0,0 +1,57 @@
+package Tests;
+
+import java.util.*;
+
+import Registration.*;
+import static Registration.RegistrationState.*;
+import static Registration.RegistrationKind.*;
+import ObjectStateTracker.*;
+
+public class TesterConcurrentTracker {
+
+    private static final int THREADS = 8;
+    private static final int REGISTRATIONS_PER_THREAD = 20_000;
+
+    public static void main(String[] args) throws InterruptedException {
+        ConcurrentObjectStateTracker<Registration, RegistrationState> regState = RegistrationFixture.withRegistrationStates(
+                new ConcurrentObjectStateTracker<Registration, RegistrationState>(RegistrationState.values()));
+        Registration.withTracker(regState);
+
+        /* Each thread adds its own registrations and takes them through the whole process */
+        List<Registration> registrations = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < THREADS; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < REGISTRATIONS_PER_THREAD; i++) {
+                    Registration r = new Registration("Registration " + thread + "-" + i, STUDENT);
+                    registrations.add(r);
+                    regState.addObjects(r);
+                    r.setAffiliation("University of Miskatonic"); // filled
+                    r.setValidated(true); // validated
+                    r.pay(STUDENT.getPrice()); // finished
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        /* No transition can be lost */
+        List<RegistrationState> expected = List.of(STARTED, FILLED, VALIDATED, FINISHED);
+        int wrong = 0;
+        for (Registration r : registrations) {
+            List<RegistrationState> trajectory = new ArrayList<>();
+            regState.trajectory(r).forEach(trajectory::add);
+            if (trajectory.equals(expected) == false) {
+                wrong++;
+            }
+        }
+        System.out.println("Registrations: " + registrations.size());
+        System.out.println("FINISHED: " + regState.countIn(FINISHED));
+        System.out.println("Wrong trajectories: " + wrong);
+    }
+}
@@ -0,0 +1,33 @@
+package Tests;
+
+
+import Registration.*;
+import static Registration.RegistrationState.*;
+import static Registration.RegistrationKind.*;
+import ObjectStateTracker.*;
+
+public class TesterEnumStateTracker {
+
+    public static void main(String[] args) {
+        EnumStateTracker<Registration, RegistrationState> regState = RegistrationFixture.withRegistrationStates(new EnumStateTracker<>(RegistrationState.class))
+                .withListener((r, t) -> System.out.println("  " + r + " -> " + t.last()));
+        Registration annSmith = new Registration("Ann Smith", FULL);
+        Registration johnDoe = new Registration("John Doe", STUDENT);
+        Registration lisaMartin = new Registration("Lisa Martin", MEMBER);
+        regState.addObjects(annSmith, johnDoe, lisaMartin);
+        System.out.println(regState);
+
+        annSmith.setAffiliation("University of Miskatonic"); // now it is filled
+        johnDoe.pay(STUDENT.getPrice()); // becomes payed
+        regState.updateStates();
+        System.out.println(regState);
+        System.out.println("STARTED: " + regState.countIn(STARTED) + " " + regState.objectsIn(STARTED));
+        System.out.println(johnDoe + ": " + regState.stateOf(johnDoe) + " " + regState.trajectory(johnDoe));
+
+        regState.removeObject(annSmith);
+        annSmith.pay(FULL.getPrice()); // not tracked any more
+        regState.updateStates();
+        System.out.println(regState);
+        System.out.println("FILLED: " + regState.countIn(FILLED) + ", tracked: " + regState.iterator().hasNext());
+    }
+}
@@ -0,0 +1,18 @@
+package Tests;
+
+import Process.Process;
+import Registration.*;
+
+public class TesterLiveProcess extends TesterProcess {
+
+    private Process<RegistrationState> liveProcess;
+
+    public static void main(String[] args) {
+        TesterLiveProcess tsc = new TesterLiveProcess();
+        tsc.createRegistrations();
+        tsc.liveProcess = new Process<>(RegistrationState.values()).follow(tsc.regState);
+        tsc.changeRegistrations(); // the process is updated with each transition
+        System.out.println(tsc.liveProcess.snapshot());
+        tsc.buildProcess(); // the same process, built from the trajectories
+    }
+}
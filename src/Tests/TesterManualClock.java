@@ -0,0 +1,60 @@
+package Tests;
+
+import java.time.Duration;
+import java.util.List;
+
+import ObjectStateTracker.*;
+import Process.Process;
+import Registration.*;
+import static Registration.RegistrationState.*;
+import static Registration.RegistrationKind.*;
+
+public class TesterManualClock extends TesterProcess {
+
+    protected final ManualClock clock = new ManualClock();
+
+    public static void main(String[] args) {
+        TesterManualClock tsc = new TesterManualClock();
+        tsc.createRegistrations();
+        tsc.changeRegistrations();
+
+        /* The timestamps are the ones of the clock */
+        for (Registration r : List.of(tsc.annSmith, tsc.johnDoe, tsc.lisaMartin)) {
+            Trajectory<RegistrationState> trajectory = tsc.regState.trajectory(r);
+            StringBuilder times = new StringBuilder(r + ":");
+            for (int i = 0; i < trajectory.size(); i++) {
+                times.append(' ').append(trajectory.get(i)).append('@').append(trajectory.epochNanosAt(i));
+            }
+            System.out.println(times);
+        }
+
+        Process<RegistrationState> process = new Process<>(RegistrationState.values()).follow(tsc.regState);
+        System.out.println("STARTED->FILLED: " + process.transitionLatency(STARTED, FILLED));
+        System.out.println("STARTED: " + process.dwellTime(STARTED));
+    }
+
+    protected ObjectStateTracker<Registration, RegistrationState> newTracker() {
+        return RegistrationFixture.newTracker().withClock(this.clock);
+    }
+
+    @Override
+    protected void createRegistrations() {
+        this.regState = this.newTracker();
+        this.annSmith = new Registration("Ann Smith", FULL);
+        this.johnDoe = new Registration("John Doe", STUDENT);
+        this.lisaMartin = new Registration("Lisa Martin", MEMBER);
+
+        this.regState.addObjects(annSmith, johnDoe, lisaMartin);
+    }
+
+    @Override
+    protected void changeRegistrations() {
+        this.clock.advance(Duration.ofNanos(100));
+        this.annSmith.setAffiliation("University of Miskatonic");
+        this.clock.advance(Duration.ofNanos(100));
+        this.johnDoe.pay(STUDENT.getPrice());
+        this.clock.advance(Duration.ofNanos(100));
+        this.johnDoe.setValidated(true);
+        this.lisaMartin.setAffiliation("Arkham College");
+    }
+}
@@ -0,0 +1,54 @@
+package Tests;
+
+import ObjectStateTracker.*;
+import Registration.*;
+import static Registration.RegistrationState.*;
+
+public class TesterMetrics extends TesterManualClock {
+
+    private final TrackerMetrics<RegistrationState> metrics = new TrackerMetrics<RegistrationState>().withEvents(true);
+
+    public static void main(String[] args) {
+        TesterMetrics tsc = new TesterMetrics();
+        tsc.createRegistrations();
+        tsc.changeRegistrations();
+        tsc.regState.updateStates();
+
+        TrackerMetrics<RegistrationState> metrics = tsc.regState.metrics();
+        System.out.println("Notifications: " + metrics.notifications());
+        System.out.println("Re-evaluations: " + metrics.reevaluations());
+        for (RegistrationState state : RegistrationState.values()) {
+            System.out.println("Checks of " + state + ": " + metrics.evaluations(state));
+        }
+        System.out.println("Initial STARTED: " + metrics.transitions(null, STARTED));
+        System.out.println("STARTED->FILLED: " + metrics.transitions(STARTED, FILLED));
+        System.out.println("PAYED->FINISHED: " + metrics.transitions(PAYED, FINISHED));
+        System.out.println("Tracked: " + metrics.trackedObjects() + ", entries: " + metrics.trajectoryEntries());
+        System.out.println("Latencies: " + metrics.evaluationLatency().count());
+
+        /* The parallel update records the same metrics */
+        long before = metrics.reevaluations();
+        tsc.regState.parallelUpdateStates();
+        System.out.println("Parallel re-evaluations: " + (metrics.reevaluations() - before));
+
+        /* The compiled rules count the rules decided for each state */
+        TrackerMetrics<RegistrationState> rulesMetrics = new TrackerMetrics<>();
+        ObjectStateTracker<Registration, RegistrationState> rules = new ObjectStateTracker<>(RegistrationState.values());
+        rules.withRules(RegistrationTable.registrationRules()).withMetrics(rulesMetrics);
+        rules.addObjects(tsc.annSmith, tsc.johnDoe, tsc.lisaMartin);
+        for (RegistrationState state : RegistrationState.values()) {
+            System.out.println("Rule checks of " + state + ": " + rulesMetrics.evaluations(state));
+        }
+
+        /* Without metrics nothing is recorded */
+        long notifications = metrics.notifications();
+        tsc.regState.withMetrics(null);
+        tsc.annSmith.setValidated(true);
+        System.out.println("Without metrics, notifications unchanged: " + (tsc.regState.metrics() == null && metrics.notifications() == notifications));
+    }
+
+    @Override
+    protected ObjectStateTracker<Registration, RegistrationState> newTracker() {
+        return super.newTracker().withMetrics(this.metrics);
+    }
+}
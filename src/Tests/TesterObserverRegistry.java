@@ -0,0 +1,35 @@
+package Tests;
+
+import Registration.*;
+import static Registration.RegistrationKind.*;
+import ObjectStateTracker.*;
+
+public class TesterObserverRegistry extends TesterStateChanges {
+
+    public static void main(String[] args) {
+        TesterObserverRegistry tsc = new TesterObserverRegistry();
+        tsc.createRegistrations();
+        tsc.changeRegistrations(); // no updateStates() needed, the tracker observes its registrations
+        System.out.println(tsc.regState);
+        System.out.println(tsc.annSmith + ": " + tsc.annSmith.countObservers() + " observers");
+
+        /* A short-lived tracker is collected without removing it */
+        tsc.addShortLivedTracker();
+        System.out.println(tsc.annSmith + ": " + tsc.annSmith.countObservers() + " observers");
+        for (int i = 0; i < 10 && tsc.annSmith.countObservers() > 1; i++) {
+            System.gc();
+        }
+        System.out.println(tsc.annSmith + ": " + tsc.annSmith.countObservers() + " observers");
+    }
+
+    @Override
+    protected void changeRegistrations() {
+        this.annSmith.setAffiliation("University of Miskatonic"); // now it is filled
+        this.johnDoe.pay(STUDENT.getPrice()); // becomes payed
+    }
+
+    protected void addShortLivedTracker() {
+        ObjectStateTracker<Registration, RegistrationState> other = new ObjectStateTracker<>(RegistrationState.values());
+        other.addObjects(this.annSmith);
+    }
+}
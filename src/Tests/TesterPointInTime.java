@@ -0,0 +1,145 @@
+package Tests;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import ObjectStateTracker.*;
+import Registration.*;
+import static Registration.RegistrationState.*;
+import static Registration.RegistrationKind.*;
+
+public class TesterPointInTime extends TesterManualClock {
+
+    public static void main(String[] args) {
+        TesterPointInTime tsc = new TesterPointInTime();
+        tsc.createRegistrations();
+        tsc.regState.withTransitionIndex(true);
+        tsc.changeRegistrations();
+
+        /* The state of a registration at several instants */
+        Trajectory<RegistrationState> trajectory = tsc.regState.trajectory(tsc.johnDoe);
+        for (long nanos : new long[]{-1, 0, 150, 250, 1000}) {
+            System.out.println(tsc.johnDoe + " at " + nanos + ": " + trajectory.stateAt(at(nanos)));
+        }
+
+        /* The population at several instants, with and without the index */
+        for (long nanos : new long[]{0, 150, 250}) {
+            StateSnapshot<Registration, RegistrationState> snapshot = tsc.regState.snapshotAt(at(nanos));
+            System.out.println("At " + nanos + ": " + snapshot + " FILLED=" + snapshot.objectsIn(FILLED) + " PAYED=" + snapshot.objectsIn(PAYED));
+            System.out.println("Indexed counts at " + nanos + ": " + tsc.regState.countsAt(at(nanos)));
+        }
+        tsc.regState.withTransitionIndex(false);
+        System.out.println("Without index at 150: " + tsc.regState.countsAt(at(150)));
+        tsc.regState.withTransitionIndex(true);
+
+        /* A removed registration is not counted nor a member, even before its removal */
+        StateSnapshot<Registration, RegistrationState> taken = tsc.regState.snapshotAt(at(250));
+        tsc.clock.advance(Duration.ofNanos(100));
+        tsc.regState.removeObject(tsc.lisaMartin);
+        tsc.clock.advance(Duration.ofNanos(100));
+        System.out.println("At 350: " + tsc.regState.countsAt(at(350)) + " FILLED=" + tsc.regState.snapshotAt(at(350)).objectsIn(FILLED));
+        System.out.println("At 450: " + tsc.regState.countsAt(at(450)) + " FILLED=" + tsc.regState.snapshotAt(at(450)).objectsIn(FILLED));
+
+        /* A snapshot does not change after it is taken */
+        System.out.println("Taken before the removal, at 250: " + taken + " STARTED=" + taken.objectsIn(STARTED));
+
+        /* Many transitions, across several checkpoints of the index */
+        TesterPointInTime many = new TesterPointInTime();
+        ObjectStateTracker<Registration, RegistrationState> tracker = many.newTracker().withTransitionIndex(true);
+        Registration[] registrations = new Registration[3000];
+        for (int i = 0; i < registrations.length; i++) {
+            registrations[i] = new Registration("Registration " + i, STUDENT);
+            tracker.addObjects(registrations[i]);
+            many.clock.advance(Duration.ofNanos(1));
+        }
+        for (int i = 0; i < registrations.length; i++) {
+            registrations[i].setAffiliation("Arkham College");
+            many.clock.advance(Duration.ofNanos(1));
+            if (i % 2 == 0) {
+                registrations[i].pay(STUDENT.getPrice());
+                many.clock.advance(Duration.ofNanos(1));
+            }
+        }
+
+        /* Some of them removed */
+        int removed = 0;
+        for (int i = 0; i < registrations.length; i += 10) {
+            tracker.removeObject(registrations[i]);
+            many.clock.advance(Duration.ofNanos(1));
+            removed++;
+        }
+
+        /* The counts and the snapshots agree, with and without the index */
+        List<StateSnapshot<Registration, RegistrationState>> indexed = new ArrayList<>();
+        boolean agree = true;
+        for (long nanos = 0; nanos < many.clock.epochNanos(); nanos += 97) {
+            StateSnapshot<Registration, RegistrationState> snapshot = tracker.snapshotAt(at(nanos));
+            agree &= tracker.countsAt(at(nanos)).equals(snapshot.counts());
+            indexed.add(snapshot);
+        }
+        tracker.withTransitionIndex(false);
+        for (long nanos = 0; nanos < many.clock.epochNanos(); nanos += 97) {
+            StateSnapshot<Registration, RegistrationState> snapshot = tracker.snapshotAt(at(nanos));
+            agree &= tracker.countsAt(at(nanos)).equals(snapshot.counts()) && sameMembers(snapshot, indexed.get((int) (nanos / 97)));
+        }
+        tracker.withTransitionIndex(true);
+        System.out.println("At the end: " + tracker.countsAt(at(many.clock.epochNanos())) + ", removed: " + removed + ", counts and snapshots agree: " + agree);
+
+        /* An index created later gets the trajectories out of order, and counts as searching them */
+        tracker.withTransitionIndex(false);
+        List<Map<RegistrationState, Integer>> searched = new ArrayList<>();
+        for (long nanos = 0; nanos < many.clock.epochNanos(); nanos += 97) {
+            searched.add(tracker.countsAt(at(nanos)));
+        }
+        tracker.withTransitionIndex(true);
+        agree = true;
+        for (long nanos = 0; nanos < many.clock.epochNanos(); nanos += 97) {
+            agree &= tracker.countsAt(at(nanos)).equals(searched.get((int) (nanos / 97)));
+        }
+        System.out.println("Index created later agrees with searching: " + agree);
+
+        /* Trajectories capped by a retention policy leave a gap in the index as well */
+        TesterPointInTime capped = new TesterPointInTime();
+        ObjectStateTracker<Registration, RegistrationState> cappedTracker = capped.newTracker().withTransitionIndex(true)
+                .withRetention(new RetentionPolicy<Registration, RegistrationState>().maxTrajectoryLength(3));
+        Registration[] toggled = new Registration[10];
+        for (int i = 0; i < toggled.length; i++) {
+            toggled[i] = new Registration("Toggled " + i, MEMBER);
+            cappedTracker.addObjects(toggled[i]);
+            capped.clock.advance(Duration.ofNanos(1));
+        }
+        for (int round = 0; round < 5; round++) {
+            for (Registration registration : toggled) {
+                registration.setValidated(round % 2 == 0);
+                capped.clock.advance(Duration.ofNanos(1));
+            }
+        }
+        List<StateSnapshot<Registration, RegistrationState>> cappedIndexed = new ArrayList<>();
+        List<Map<RegistrationState, Integer>> cappedCounts = new ArrayList<>();
+        for (long nanos = 0; nanos <= capped.clock.epochNanos(); nanos++) {
+            cappedIndexed.add(cappedTracker.snapshotAt(at(nanos)));
+            cappedCounts.add(cappedTracker.countsAt(at(nanos)));
+        }
+        cappedTracker.withTransitionIndex(false);
+        agree = true;
+        for (long nanos = 0; nanos <= capped.clock.epochNanos(); nanos++) {
+            StateSnapshot<Registration, RegistrationState> snapshot = cappedTracker.snapshotAt(at(nanos));
+            agree &= sameMembers(snapshot, cappedIndexed.get((int) nanos)) && snapshot.counts().equals(cappedCounts.get((int) nanos));
+        }
+        System.out.println("Capped at " + cappedTracker.trajectory(toggled[0]).size() + " visits, " + cappedTracker.trajectory(toggled[0]).dropped()
+                + " dropped, counts and snapshots agree with the index: " + agree);
+    }
+
+    private static boolean sameMembers(StateSnapshot<Registration, RegistrationState> one, StateSnapshot<Registration, RegistrationState> other) {
+        for (RegistrationState state : RegistrationState.values()) {
+            if (one.objectsIn(state).equals(other.objectsIn(state)) == false) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static Instant at(long nanos) {
+        return Instant.ofEpochSecond(0, nanos);
+    }
+}
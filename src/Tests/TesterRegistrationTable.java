@@ -0,0 +1,95 @@
+package Tests;
+
+
+import Registration.*;
+import static Registration.RegistrationState.*;
+import ObjectStateTracker.*;
+
+public class TesterRegistrationTable {
+
+    private static final int ROWS = 1003;
+
+    public static void main(String[] args) {
+        ObjectStateTracker<Registration, RegistrationState> regState = RegistrationFixture.newTracker();
+        RegistrationTable table = new RegistrationTable();
+
+        /* Every combination of kind, payment, validation and affiliation */
+        RegistrationKind[] kinds = RegistrationKind.values();
+        Registration[] registrations = new Registration[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            Registration r = new Registration("Registration " + i, kinds[i % kinds.length]);
+            double[] payments = {0, r.getTotalAmount() / 2, r.getTotalAmount(), r.getTotalAmount() + 1};
+            r.pay(payments[(i / 3) % payments.length]);
+            r.setValidated((i / 12) % 2 == 1);
+            if ((i / 24) % 2 == 1) {
+                r.setAffiliation("University of Miskatonic");
+            }
+            registrations[i] = r;
+            regState.addObjects(r);
+            table.add(r);
+        }
+        System.out.println("Added: " + table + " " + differences(regState, table, registrations));
+        check(regState, table, registrations);
+
+        /* The same changes on the registrations and on the rows */
+        for (int i = 0; i < ROWS; i += 7) {
+            registrations[i].pay(1);
+            table.pay(i, 1);
+            registrations[i].setValidated(!registrations[i].getValidated());
+            table.setValidated(i, !table.getValidated(i));
+            registrations[i].setAffiliation("Arkham College");
+            table.setAffiliation(i, "Arkham College");
+        }
+        System.out.println("Before the update: " + table);
+        check(regState, table, registrations);
+        System.out.println(table.getKind(7) + " " + table.getAmountPayed(7) + " " + table.getAffiliation(7) + " " + table.getValidated(7));
+
+        /* The same rules in a tracker and in a table */
+        StateRules<Registration, RegistrationState> rules = RegistrationTable.newRules()
+                .rule(FINISHED, "validated", "fullyPayed")
+                .rule(VALIDATED, "validated")
+                .rule(FILLED, "affiliated", "!notPayed")
+                .elseState(STARTED);
+        ObjectStateTracker<Registration, RegistrationState> ruleState = new ObjectStateTracker<>(RegistrationState.values());
+        ruleState.withRules(rules).addObjects(registrations);
+        RegistrationTable ruleTable = new RegistrationTable(rules);
+        for (Registration r : registrations) {
+            ruleTable.add(r);
+        }
+        System.out.println("Custom rules: " + ruleTable + " " + differences(ruleState, ruleTable, registrations));
+        check(ruleState, ruleTable, registrations);
+
+        /* Only the conditions of the table can be used */
+        try {
+            new RegistrationTable(RegistrationTable.newRules()
+                    .condition("student", r -> r.getKind() == RegistrationKind.STUDENT)
+                    .rule(FINISHED, "student")
+                    .elseState(STARTED));
+            System.out.println("Unknown condition accepted");
+        } catch (IllegalStateException e) {
+            System.out.println("Unknown condition rejected");
+        }
+    }
+
+    private static void check(ObjectStateTracker<Registration, RegistrationState> regState, RegistrationTable table, Registration[] registrations) {
+        table.withVectors(true).updateStates();
+        System.out.println("Vectors (" + ((table.getVectorRows() > 0) ? "vectors used" : "no vectors") + "): " + table + " " + differences(regState, table, registrations));
+        table.withVectors(false).updateStates();
+        System.out.println("Scalar (" + ((table.getVectorRows() > 0) ? "vectors used" : "no vectors") + "): " + table + " " + differences(regState, table, registrations));
+        for (RegistrationState state : RegistrationState.values()) {
+            if (table.countIn(state) != regState.countIn(state)) {
+                System.out.println("Different count of " + state);
+            }
+        }
+    }
+
+    private static int differences(ObjectStateTracker<Registration, RegistrationState> regState, RegistrationTable table, Registration[] registrations) {
+        int differences = 0;
+        for (int row = 0; row < registrations.length; row++) {
+            if (table.stateOf(row) != regState.stateOf(registrations[row])) {
+                differences++;
+            }
+        }
+        return differences;
+    }
+}
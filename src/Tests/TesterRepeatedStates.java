@@ -0,0 +1,22 @@
+package Tests;
+
+public class TesterRepeatedStates extends TesterStateChanges {
+
+    public static void main(String[] args) {
+        TesterRepeatedStates tsc = new TesterRepeatedStates();
+        tsc.createRegistrations();
+        tsc.changeRegistrations();
+        System.out.println(tsc.annSmith + ": " + tsc.regState.trajectory(tsc.annSmith));
+        System.out.println(tsc.annSmith + ": " + tsc.regState.trajectory(tsc.annSmith).getStates().keySet());
+    }
+
+    @Override
+    protected void changeRegistrations() {
+        this.annSmith.setAffiliation("University of Miskatonic"); // now it is filled
+        this.regState.updateStates();
+        this.annSmith.setValidated(true); // becomes validated
+        this.regState.updateStates();
+        this.annSmith.setValidated(false); // filled again, the first visit is kept
+        this.regState.updateStates();
+    }
+}
@@ -0,0 +1,88 @@
+package Tests;
+
+import java.io.*;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.*;
+import ObjectStateTracker.*;
+import Process.Process;
+import Registration.*;
+import static Registration.RegistrationState.*;
+
+public class TesterRetention extends TesterManualClock {
+
+    private final List<String> archived = new ArrayList<>();
+    private int longestSeen;
+    private final RetentionPolicy<Registration, RegistrationState> policy = new RetentionPolicy<Registration, RegistrationState>()
+            .evictAfter(Duration.ofNanos(50), FINISHED, REJECTED)
+            .maxTrajectoryLength(3)
+            .withArchive((r, trajectory) -> this.archived.add(r + " in " + trajectory.last()));
+
+    public static void main(String[] args) {
+        TesterRetention tsc = new TesterRetention();
+        tsc.createRegistrations();
+        tsc.changeRegistrations(); // John Doe is finished at 300
+        System.out.println(tsc.regState);
+
+        /* Before the deadline the finished registration is kept */
+        tsc.clock.advance(Duration.ofNanos(40));
+        tsc.lisaMartin.setValidated(true);
+        System.out.println(tsc.regState + " " + tsc.archived);
+
+        /* After it, the next notification removes it */
+        tsc.clock.advance(Duration.ofNanos(20));
+        tsc.lisaMartin.setValidated(false);
+        System.out.println(tsc.regState + " " + tsc.archived);
+        System.out.println("Observers of John Doe: " + tsc.johnDoe.countObservers());
+
+        /* The trajectories keep the first visit and the last ones */
+        tsc.lisaMartin.setValidated(true);
+        tsc.lisaMartin.setValidated(false);
+        Trajectory<RegistrationState> trajectory = tsc.regState.trajectory(tsc.lisaMartin);
+        System.out.println(tsc.lisaMartin + ": " + trajectory.size() + " visits, " + trajectory.dropped() + " dropped, "
+                + trajectory.first() + " ... " + trajectory.get(1) + " -> " + trajectory.last());
+        System.out.println("Listener before the policy saw at most 3 visits: " + (tsc.longestSeen <= 3));
+
+        /* Inside the gap the state is unknown, and a process does not count the transition across it */
+        System.out.println("At " + trajectory.gapStart() + ": " + trajectory.stateAt(Instant.ofEpochSecond(0, trajectory.gapStart()))
+                + ", at " + trajectory.epochNanosAt(1) + ": " + trajectory.stateAt(Instant.ofEpochSecond(0, trajectory.epochNanosAt(1))));
+        Process<RegistrationState> process = new Process<>(RegistrationState.values());
+        process.add(trajectory);
+        System.out.println(trajectory.first() + " -> " + trajectory.get(1) + ": " + process.transitionCount(trajectory.first(), trajectory.get(1)));
+        System.out.println("Pending: " + tsc.policy.pending());
+
+        /* The finished registrations restored from a checkpoint are evicted as well */
+        tsc.lisaMartin.pay(RegistrationKind.MEMBER.getPrice());
+        tsc.lisaMartin.setValidated(true);
+        ObjectStateTracker<Registration, RegistrationState> restored = tsc.restoreCheckpoint();
+        System.out.println(restored + " " + tsc.archived);
+        System.out.println("Restored gap: " + restored.trajectory(tsc.lisaMartin).dropped() + " dropped from " + restored.trajectory(tsc.lisaMartin).gapStart());
+        tsc.clock.advance(Duration.ofNanos(60));
+        restored.updateStates();
+        System.out.println(restored + " " + tsc.archived);
+    }
+
+    /* Restores the tracker into a new one, with its own policy */
+    private ObjectStateTracker<Registration, RegistrationState> restoreCheckpoint() {
+        List<Registration> ids = new ArrayList<>(List.of(this.annSmith, this.lisaMartin));
+        ObjectStateTracker<Registration, RegistrationState> restored = super.newTracker()
+                .withRetention(new RetentionPolicy<Registration, RegistrationState>()
+                        .evictAfter(Duration.ofNanos(50), FINISHED, REJECTED)
+                        .withArchive((r, trajectory) -> this.archived.add(r + " restored in " + trajectory.last())));
+        try {
+            ByteArrayOutputStream checkpoint = new ByteArrayOutputStream();
+            this.regState.checkpoint(checkpoint, ids::indexOf);
+            restored.restore(new ByteArrayInputStream(checkpoint.toByteArray()), id -> ids.get((int) id));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return restored;
+    }
+
+    @Override
+    protected ObjectStateTracker<Registration, RegistrationState> newTracker() {
+        return super.newTracker()
+                .withListener((r, trajectory) -> this.longestSeen = Math.max(this.longestSeen, trajectory.size()))
+                .withRetention(this.policy);
+    }
+}
@@ -0,0 +1,16 @@
+package Tests;
+
+import static Registration.RegistrationState.*;
+
+public class TesterStateMembers extends TesterStateChanges {
+
+    public static void main(String[] args) {
+        TesterStateMembers tsc = new TesterStateMembers();
+        tsc.createRegistrations();
+        tsc.changeRegistrations();
+        System.out.println("STARTED: " + tsc.regState.countIn(STARTED) + " " + tsc.regState.objectsIn(STARTED));
+        System.out.println("PAYED: " + tsc.regState.countIn(PAYED) + " " + tsc.regState.objectsIn(PAYED));
+        System.out.println("FINISHED: " + tsc.regState.countIn(FINISHED) + " " + tsc.regState.objectsIn(FINISHED));
+        System.out.println(tsc.annSmith + ": " + tsc.regState.stateOf(tsc.annSmith));
+    }
+}
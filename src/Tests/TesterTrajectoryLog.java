@@ -0,0 +1,82 @@
+package Tests;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import ObjectStateTracker.*;
+import Registration.*;
+
+public class TesterTrajectoryLog extends TesterManualClock {
+
+    private TrajectoryLog<Registration, RegistrationState> log;
+    private final List<Registration> registrations = new ArrayList<>();
+
+    public static void main(String[] args) {
+        try {
+            run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void run() throws IOException {
+        Path directory = Files.createTempDirectory("trajectory-log");
+        TesterTrajectoryLog tsc = new TesterTrajectoryLog();
+
+        /* Two records per segment, so the log goes on in several segments */
+        tsc.log = new TrajectoryLog<>(directory, 2 * TrajectoryLog.RECORD_BYTES, tsc::idOf, RegistrationState.values());
+        tsc.createRegistrations();
+        tsc.changeRegistrations();
+        tsc.regState.removeObject(tsc.registrations.get(1)); // the removal is logged too
+        tsc.log.close();
+        System.out.println(tsc.regState);
+
+        /* A new tracker gets the same states and timestamps from the log */
+        ObjectStateTracker<Registration, RegistrationState> restored = new ObjectStateTracker<>(RegistrationState.values());
+        TrajectoryLog<Registration, RegistrationState> reopened = new TrajectoryLog<>(directory, 2 * TrajectoryLog.RECORD_BYTES, tsc::idOf, RegistrationState.values());
+        restored.restore(reopened, id -> tsc.registrations.get((int) id));
+        System.out.println(restored);
+        for (Registration r : tsc.registrations) {
+            Trajectory<RegistrationState> trajectory = restored.trajectory(r);
+            System.out.println(r + ": " + ((trajectory == null) ? "removed"
+                    : trajectory.size() + " states, last at " + trajectory.epochNanosAt(trajectory.size() - 1)));
+        }
+
+        /* The reopened log goes on after the last record */
+        reopened.append(0, RegistrationState.REJECTED, 1000);
+        List<String> records = new ArrayList<>();
+        reopened.replay(new TrajectoryLog.Visitor<RegistrationState>() {
+            @Override
+            public void visit(long id, RegistrationState state, long epochNanos) {
+                records.add(id + ":" + state + "@" + epochNanos);
+            }
+
+            @Override
+            public void removed(long id, long epochNanos) {
+                records.add(id + ":removed@" + epochNanos);
+            }
+        });
+        System.out.println(records);
+        reopened.close();
+
+        try (DirectoryStream<Path> segments = Files.newDirectoryStream(directory)) {
+            for (Path segment : segments) {
+                Files.delete(segment);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Override
+    protected ObjectStateTracker<Registration, RegistrationState> newTracker() {
+        return super.newTracker().withListener(this.log);
+    }
+
+    /* The identifier of a registration is the order in which it was first logged */
+    private long idOf(Registration r) {
+        if (this.registrations.contains(r) == false) {
+            this.registrations.add(r);
+        }
+        return this.registrations.indexOf(r);
+    }
+}
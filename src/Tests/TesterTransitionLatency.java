@@ -0,0 +1,34 @@
+package Tests;
+
+import ObjectStateTracker.LogHistogram;
+import Process.Process;
+import Registration.*;
+
+public class TesterTransitionLatency extends TesterProcess {
+
+    public static void main(String[] args) {
+        TesterTransitionLatency tsc = new TesterTransitionLatency();
+        tsc.createRegistrations();
+        tsc.changeRegistrations();
+
+        Process<RegistrationState> process = new Process<>(RegistrationState.values());
+        for (Registration r : tsc.regState) {
+            process.add(tsc.regState.trajectory(r));
+        }
+
+        /* One latency for each transition made, and the dwell time of a state adds them */
+        System.out.println("STARTED->FILLED: " + process.transitionLatency(RegistrationState.STARTED, RegistrationState.FILLED).count());
+        System.out.println("STARTED->PAYED: " + process.transitionLatency(RegistrationState.STARTED, RegistrationState.PAYED).count());
+        System.out.println("FILLED->VALIDATED: " + process.transitionLatency(RegistrationState.FILLED, RegistrationState.VALIDATED).count());
+        System.out.println("STARTED: " + process.dwellTime(RegistrationState.STARTED).count());
+        System.out.println("FINISHED: " + process.dwellTime(RegistrationState.FINISHED).count());
+
+        /* Quantiles of known values, with a relative error below 1/16 */
+        LogHistogram histogram = new LogHistogram();
+        for (long value = 1; value <= 1000; value++) {
+            histogram.record(value);
+        }
+        System.out.println(histogram);
+        System.out.println(histogram.copy().merge(histogram));
+    }
+}